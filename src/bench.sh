@@ -0,0 +1,18 @@
+#!/bin/sh
+#Licensed under the GNU Public License version 3.0 or greater
+#Runs the JMH benchmarks in bench/ against the extension and the in-memory Burp stand-in
+
+# JMH is not bundled: put jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars in lib/
+jmh=$(ls lib/*.jar 2>/dev/null | tr '\n' ':')
+if [ -z "$jmh" ]; then
+    echo "No JMH jars found in lib/"
+    exit 1
+fi
+
+# Compile everything, the JMH annotation processor generates the benchmark harness, and quit if any errors occur
+rm -rf bench-classes && mkdir -p bench-classes
+javac -cp "$jmh" -d bench-classes burp/*.java harness/burp/*.java bench/burp/*.java || exit 1
+# Time and allocation rate per operation, results saved as JSON so runs can be compared. Any argument is passed
+# on to JMH, e.g. a benchmark name regex or -p padding=0
+java -Xmx1024m -classpath "bench-classes:$jmh" org.openjdk.jmh.Main -prof gc -rf json \
+    -rff "bench-$(date +%Y%m%d-%H%M%S).json" "$@"
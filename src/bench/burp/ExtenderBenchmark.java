@@ -0,0 +1,128 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-message cost of the extender's hot paths. Each invocation takes the next message of a small rotating set of
+// SpiderTraffic requests, so header orders, GET/POST and cookie/no-cookie requests are all covered. Run through
+// bench.sh to get allocation rates from -prof gc and JSON results.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtenderBenchmark {
+    private static final int MESSAGES = 64; // Power of two, next() picks messages with an index mask
+
+    // Extra request bytes in cookies or form fields, from a bare request to a heavy analytics cookie
+    @Param({ "0", "2048", "16384" })
+    public int padding;
+
+    // Response body size, used by the rendered issue
+    @Param({ "4096" })
+    public int bodySize;
+
+    private BurpExtender extender;
+    private Target target;
+    private byte[][] requests;
+    private MemoryRequestResponse[] messages;
+    private List<List<IParameter>> parameters;
+    private IssueRecord[] issues;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        extender = new BurpExtender();
+        MemoryCallbacks callbacks = new MemoryCallbacks(extender);
+        callbacks.quiet = true;
+        extender.mcallBacks = callbacks;
+        extender.scope = new ScopeMatcher(callbacks);
+        callbacks.registerScopeChangeListener(extender.scope);
+        extender.scope.include(new URL("http://bench.local/"));
+        target = new Target("http://bench.local/", "bench", "session=benchmark; role=user");
+        target.classifier = IssueClassifier.defaults();
+        extender.targets.add(target);
+        extender.targetsByHost.put(target.getHost(), target);
+
+        SpiderTraffic traffic = new SpiderTraffic("bench.local", bodySize, padding);
+        requests = new byte[MESSAGES][];
+        messages = new MemoryRequestResponse[MESSAGES];
+        parameters = new ArrayList<List<IParameter>>(MESSAGES);
+        issues = new IssueRecord[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            requests[i] = traffic.request(i);
+            messages[i] = new MemoryRequestResponse(traffic.service(), requests[i], traffic.response(i));
+            parameters.add(callbacks.getHelpers().analyzeRequest(requests[i]).getParameters());
+            issues[i] = new IssueRecord(new MemoryScanIssue(new URL("http://bench.local/issue/" + i),
+                    "Cookie without HttpOnly flag set", "Low", messages[i]));
+        }
+    }
+
+    private int next() {
+        next = (next + 1) & (MESSAGES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public IHttpRequestResponse appendCookies() {
+        int i = next();
+        messages[i].setRequest(requests[i]); // Undo the previous rewrite so every call does the full work
+        return extender.appendCookies(messages[i], target);
+    }
+
+    @Benchmark
+    public byte[] cookieRewrite() {
+        return target.cookieRewriter.rewrite(requests[next()]);
+    }
+
+    @Benchmark
+    public boolean scopeCheck() {
+        int i = next();
+        return extender.scope.isInScope(messages[i].getHttpService(), requests[i]);
+    }
+
+    @Benchmark
+    public String getHostFromRespone() {
+        int i = next();
+        messages[i].setRequest(requests[i]);
+        return extender.getHostFromRespone(messages[i]);
+    }
+
+    @Benchmark
+    public boolean parameterInspection() {
+        return extender.isActiveScanCandidate(parameters.get(next()));
+    }
+
+    // Includes the stand-in's request parsing, which replaces Burp's own analyzeRequest here
+    @Benchmark
+    public boolean analyzeAndInspect() {
+        return extender.isActiveScanCandidate(
+                extender.mcallBacks.getHelpers().analyzeRequest(requests[next()]).getParameters());
+    }
+
+    @Benchmark
+    public String generateHTMLissue() {
+        return extender.generateHTMLissue(issues[next()], target);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Admission control in front of doActiveScan. Candidates wait in a priority queue on our side and at most
+// maxInFlight of them are handed to Burp at once, the rest follow as the ScanTracker sees items finish. This keeps
+// Burp's scan queue (and heap) bounded while spidering, and scans the most promising requests first. Our own queue
+// holds the request bytes, so it is capped at MAX_QUEUED: a full queue drops its lowest priority candidate and gives
+// its shape slot back, so a later request of that shape can still be scanned.
+public class ActiveScanScheduler {
+    static final int MAX_QUEUED = 16384;
+
+    private final IBurpExtenderCallbacks callbacks;
+    private final ScanTracker tracker;
+    private final ShapeIndex shapes;
+    private final int maxInFlight;
+    private final TreeSet<Candidate> queue = new TreeSet<Candidate>(); // Sorted both ways, best first
+    private final FingerprintTable pathsSeen = new FingerprintTable();
+    private final AtomicLong sequence = new AtomicLong();
+    private int admitting;                                    // Taken off the queue, not yet in the tracker
+    private long dropped;
+
+    public ActiveScanScheduler(final IBurpExtenderCallbacks callbacks, final ScanTracker tracker,
+            final ShapeIndex shapes, final int maxInFlight) {
+        this.callbacks = callbacks;
+        this.tracker = tracker;
+        this.shapes = shapes;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    // Score a request: new paths first, then requests with a body format worth fuzzing, then by parameter count
+    public int priority(final String host, final String path, final int parameters, final byte contentType) {
+        boolean novel = pathsSeen.add(Hashing.combine(Hashing.hash64(host), Hashing.hash64(path)));
+
+        int typeWeight;
+        switch (contentType) {
+        case IRequestInfo.CONTENT_TYPE_JSON:
+        case IRequestInfo.CONTENT_TYPE_XML:
+            typeWeight = 4;
+            break;
+        case IRequestInfo.CONTENT_TYPE_URL_ENCODED:
+        case IRequestInfo.CONTENT_TYPE_MULTIPART:
+            typeWeight = 3;
+            break;
+        case IRequestInfo.CONTENT_TYPE_NONE:
+            typeWeight = 1;
+            break;
+        default:
+            typeWeight = 2;
+            break;
+        }
+
+        return (novel ? 1000 : 0) + typeWeight * 100 + Math.min(parameters, 99);
+    }
+
+    public void submit(final String host, final int port, final boolean useHttps, final byte[] request,
+            final int priority, final long signature) {
+        Candidate lowest = null;
+        synchronized (queue) {
+            queue.add(new Candidate(host, port, useHttps, request, priority, signature, sequence.getAndIncrement()));
+            if (queue.size() > MAX_QUEUED) {
+                lowest = queue.pollLast();
+                if (dropped++ == 0) {
+                    System.out.println(MAX_QUEUED + " requests wait for active scanning, dropping the lowest priority");
+                }
+            }
+        }
+        if (lowest != null) {
+            shapes.release(lowest.signature);
+        }
+        topUp();
+    }
+
+    // Hand queued candidates to Burp until maxInFlight items are running, called after submits and tracker polls
+    public void topUp() {
+        while (true) {
+            Candidate candidate;
+            synchronized (queue) {
+                if (queue.isEmpty() || tracker.size() + admitting >= maxInFlight) {
+                    return;
+                }
+                candidate = queue.pollFirst();
+                admitting++;
+            }
+
+            try {
+                IScanQueueItem item = callbacks.doActiveScan(candidate.host, candidate.port, candidate.useHttps,
+                        candidate.request);
+                tracker.add(item, candidate.signature);
+            } finally {
+                synchronized (queue) {
+                    admitting--;
+                }
+            }
+        }
+    }
+
+    public int queued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    // Candidates dropped from a full queue
+    public long getDropped() {
+        synchronized (queue) {
+            return dropped;
+        }
+    }
+
+    public boolean isIdle() {
+        synchronized (queue) {
+            return queue.isEmpty() && admitting == 0 && tracker.isEmpty();
+        }
+    }
+
+    static final class Candidate implements Comparable<Candidate> {
+        final String host;
+        final int port;
+        final boolean useHttps;
+        final byte[] request;
+        final int priority;
+        final long signature;                                 // Request shape, see ShapeIndex
+        final long sequence;
+
+        Candidate(final String host, final int port, final boolean useHttps, final byte[] request,
+                final int priority, final long signature, final long sequence) {
+            this.host = host;
+            this.port = port;
+            this.useHttps = useHttps;
+            this.request = request;
+            this.priority = priority;
+            this.signature = signature;
+            this.sequence = sequence;
+        }
+
+        // Highest priority first, crawl order between equals
+        public int compareTo(final Candidate other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides when a spider has gone quiet. Burp's threads only count requests and stamp the last one with the monotonic
+// clock; the monitor samples the count and keeps an exponentially weighted request rate with a time constant of a
+// third of the quiet window. The spider is quiescent once that rate has stayed at or below IDLE_RATE for the whole
+// quiet window: a steady trickle keeps lifting it above, and a slow crawl whose rate dips between two requests is
+// not done yet. The first window after start is never quiescent, the spider has not had time to send anything yet.
+public class ActivityTracker {
+    static final double IDLE_RATE = 0.05;                     // Requests per second considered near zero
+
+    private final Clock clock;
+    private final long quietNanos;
+    private final double tauNanos;
+    private final LongAdder requests = new LongAdder();
+    private volatile long lastActivity;
+
+    // Sampler state, only touched by the monitor thread
+    private long lastSample;
+    private long lastCount;
+    private double rate;                                      // Requests per second
+    private long idleSince;                                   // Since when the rate is at or below IDLE_RATE, -1 above
+
+    public ActivityTracker(final Clock clock, final long quietWindow, final TimeUnit unit) {
+        this.clock = clock;
+        this.quietNanos = Math.max(1, unit.toNanos(quietWindow));
+        this.tauNanos = Math.max(1, quietNanos / 3);
+        start();
+    }
+
+    // Quiet window starts over, as if a request was just seen
+    public void start() {
+        long now = clock.nanoTime();
+        idleSince = now;
+        lastActivity = now;
+        lastSample = now;
+        lastCount = requests.sum();
+        rate = 0;
+    }
+
+    // Called on Burp's threads for each request
+    public void record() {
+        requests.increment();
+        lastActivity = clock.nanoTime();
+    }
+
+    // Called by the monitor, folds the requests since the last sample into the rate
+    public void sample() {
+        long now = clock.nanoTime();
+        long elapsed = now - lastSample;
+        if (elapsed <= 0) {
+            return;
+        }
+
+        long count = requests.sum();
+        double instant = (count - lastCount) * 1e9 / elapsed;
+        double alpha = 1.0 - Math.exp(-elapsed / tauNanos);
+        rate += alpha * (instant - rate);
+        lastSample = now;
+        lastCount = count;
+        if (rate > IDLE_RATE) {
+            idleSince = -1;
+        } else if (idleSince < 0) {
+            idleSince = now;
+        }
+    }
+
+    public boolean isQuiescent() {
+        return idleSince >= 0 && clock.nanoTime() - idleSince >= quietNanos;
+    }
+
+    // Time since the last request, or since start
+    public long getIdleNanos() {
+        return clock.nanoTime() - lastActivity;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+}
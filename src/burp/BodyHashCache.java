@@ -0,0 +1,59 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Sighting counts for response body hashes in a fixed amount of memory. Hashes map to 4-way sets in primitive
+// arrays; when a set is full the least seen entry makes room, so the bodies a site repeats most (error pages,
+// soft-404s, redirect stubs) stay while one-off bodies come and go. Sets are locked in stripes so the spider's
+// threads rarely contend.
+public class BodyHashCache {
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+
+    private final long[] keys;
+    private final int[] counts;
+    private final int setMask;
+    private final Object[] locks = new Object[STRIPES];
+
+    public BodyHashCache(final int capacity) {
+        int sets = Integer.highestOneBit(Math.max(STRIPES, capacity / WAYS - 1) << 1);
+        keys = new long[sets * WAYS];
+        counts = new int[sets * WAYS];
+        setMask = sets - 1;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    // Count one more sighting of the hash and return how often it has been seen, 1 for a new or evicted one
+    public int increment(final long hash) {
+        long key = hash == 0 ? 1 : hash; // 0 marks an empty slot
+        int set = (int) (key >>> 32) & setMask;
+        int base = set * WAYS;
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int victim = base;
+            for (int i = base; i < base + WAYS; i++) {
+                if (keys[i] == key) {
+                    if (counts[i] < Integer.MAX_VALUE) {
+                        counts[i]++;
+                    }
+                    return counts[i];
+                }
+                if (counts[i] < counts[victim]) {
+                    victim = i;
+                }
+            }
+
+            keys[victim] = key;
+            counts[victim] = 1;
+            return 1;
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+}
@@ -28,30 +28,59 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import java.net.URL;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
 
-import java.util.ConcurrentModificationException;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class BurpExtender implements IBurpExtender {
+public class BurpExtender implements IBurpExtender, IExtensionStateListener {
     public IBurpExtenderCallbacks mcallBacks;
-    public URL url;
     public File outsession;
-    public BufferedWriter outissues;
-    public BufferedWriter outurls;
-    public String cookies;
-    public Date lastRequest;
+    public List<Target> targets = new ArrayList<Target>();   // Applications to scan, first one is the default
+    public Map<String, Target> targetsByHost = new HashMap<String, Target>(); // Filled before Burp starts, read-only
+    public Map<String, String> options = new HashMap<String, String>(); // --name=value command line options
+    public int concurrency = 4;                               // Number of targets spidered at the same time
+    public IssueWriter issueWriter = new IssueWriter(1024);   // Renders and writes issues off the scanner threads
     public boolean scanQuit = false;                          // Quit after scanning: false = yes, true = prompt
-    public boolean monitorThread = false;
-    public Vector<IScanQueueItem> scanqueue = new Vector<IScanQueueItem>();
+    public ScheduledExecutorService monitor;                  // Watchdog for spider and scanner completion
+    public boolean spiderComplete = false;                    // All targets spidered, only touched by the monitor
+    public ScanTracker scanqueue = new ScanTracker();
+    public ActiveScanScheduler scheduler;                     // Holds active scan candidates until Burp has room
+    public int maxActiveScans = 100;                          // Active scan items handed to Burp at the same time
+    public PassiveDispatcher passive;                         // Submits passive scans off the spider's threads
+    public int passiveThreads = 2;                            // Threads submitting passive scans to Burp
+    public ShapeIndex shapes;                                 // Request shapes already sent to the active scanner
+    public ScopeMatcher scope;                                // Scope of all targets, checked without calling Burp
+    public int maxPerShape = 2;                               // Requests of the same shape that are actively scanned
+    public int maxPerCluster = 5;                             // Near-duplicate pages actively scanned, 0 = all
+    public Checkpointer checkpointer;                         // Saves the session in the background while scanning
+    public int checkpointInterval = 300;                      // Seconds between background session saves, 0 = never
+    public int checkpointWindow = 60;                         // Minimum seconds between two session saves
+    public Metrics metrics = new Metrics(this);               // Counters and gauges served to Prometheus and JMX
+    public int metricsPort = 0;                               // Loopback port serving /metrics, 0 = JMX only
+    public Latencies latencies = new Latencies();             // Callback and target response time histograms
+    public int latencyReport = 60;                            // Seconds between latency percentile reports, 0 = end
+    public long lastLatencyReport;                            // Last time latency percentiles were reported
     public File restoreState = new File("configuration.zip"); // Configuration used for command-line scanning
-    public int delay = 30;                                    // Number of seconds to wait in loop for scanning and
-                                                              // spidering
-                                                              // to complete
+    public File issueTypes = new File("issuetypes.txt");      // Optional issue categories for the report
+    public int delay = 30;                                    // Seconds between scan queue reports
+    public int quietWindow = 0;                               // Seconds without spider requests before a spider is
+                                                              // done, 0 = delay
+    public Clock clock = Clock.SYSTEM;                        // Time source for spider quiescence
+    public Journal journal;                                   // URLs, scanned shapes and issues done so far
+    public IssueIndex issueIndex;                             // Folds repeated findings into one report entry
+    public boolean resume = false;                            // Skip the work recorded in an earlier run's journal
+    public int pollInterval = 1;                              // Seconds between polls of the remaining scan items
+    public final AtomicBoolean closed = new AtomicBoolean();  // Files closed, by whichever shutdown callback came first
+    public long lastReport;                                   // Last time the spider or scan queue was reported on
 
     String header = "<html><head><style type=\"text/css\">\n"
             + "H1 { font-family: Verdana, Arial, Helvetica, sans-serif; font-size: 1.6em; font-weight: bold; line-height: 1.0em; }\n"
@@ -71,75 +100,135 @@ public class BurpExtender implements IBurpExtender {
             + ".RR_TABLE_PRINTER { background-color: #e8e8e8; width:100%; border-width: medium; border-style: solid; border-color: gray; }\n"
             + "</style>\n" + "</head>\n" + "<body>";
 
-    String alertTypes = "<p class=\"TOCH0\"><a href=\"#1\">1. SQL injection</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#2\">2. Password field with autocomplete enabled</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#3\">3. User agent-dependent response</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#4\">4. Cookie scoped to parent domain</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#5\">5.Cross-domain Referer leakage</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#6\">6. Cross-domain script include</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#7\">7. Cookie without HttpOnly flag set</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#8\">8. Email addresses disclosed</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#9\">9. Credit card numbers disclosed</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#10\">10. Content type incorrectly stated</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#11\">11. Robots.txt file</a></p>"
-            + "<p class=\"TOCH0\"><a href=\"#12\">12.Others</a></p>";
-
-    public int[] issueCounter = new int[20];
-
     // Called to handle command line arguments passed to Burp
     public void setCommandLineArgs(final String[] args) {
-        if (!(args.length == 2 | args.length == 3)) {
+        List<String> positional = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int equals = arg.indexOf('=');
+                if (equals > 2) {
+                    options.put(arg.substring(2, equals), arg.substring(equals + 1));
+                } else {
+                    options.put(arg.substring(2), "true");
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+
+        String targetList = options.get("targets");
+        if (targetList == null ? !(positional.size() == 2 | positional.size() == 3) : !positional.isEmpty()) {
             System.out.println("Automated Burp Suite spidering and scanning tool\n");
             System.out.println("Usage: URL OUTNAME {COOKIE STRING}");
+            System.out.println("       --targets=FILE {--concurrency=N}");
+            System.out.println("       {--max-active-scans=N} {--max-per-shape=N} {--max-per-cluster=N}");
+            System.out.println("       {--passive-threads=N}");
+            System.out.println("       {--passive-skip-types=image/,font/,...} {--passive-max-body=BYTES}");
+            System.out.println("       {--passive-skip-extensions=png,woff,...} {--passive-max-duplicates=N}");
+            System.out.println("       {--checkpoint-interval=SECONDS} {--checkpoint-window=SECONDS}");
+            System.out.println("       {--metrics-port=PORT} {--latency-report=SECONDS} {--quiet-window=SECONDS}");
+            System.out.println("       {--resume} {--ndjson=FILE} {--ndjson-messages}");
+            System.out.println("       {--issue-store=JDBC_URL} {--run-id=ID}");
             System.out.println("\tURL = Start URL to start spidering from");
             System.out.println("\tOUTNAME = Filename w/o extension to save files");
             System.out.println("\tCookie = Optional cookie string to append to all HTTP requests");
+            System.out.println("\tFILE = One URL OUTNAME {COOKIE STRING} per line, all scanned in this Burp instance");
+            System.out.println("\tconcurrency = Number of targets spidered at the same time, default " + concurrency);
+            System.out.println("\tmax-active-scans = Active scans handed to Burp at the same time, default "
+                    + maxActiveScans);
+            System.out.println("\tmax-per-shape = Requests actively scanned per host, method, path pattern and "
+                    + "parameter names, default " + maxPerShape);
+            System.out.println("\tmax-per-cluster = Pages actively scanned per group of near-identical pages, default "
+                    + maxPerCluster + " (0 = all)");
+            System.out.println("\tpassive-* = Threads submitting passive scans, and responses never passively "
+                    + "scanned by Content-Type prefix, path extension or body size, or after N byte-identical "
+                    + "bodies (default 3, 0 = scan all)");
+            System.out.println("\tcheckpoint-* = Seconds between background saves of the session file, default "
+                    + checkpointInterval + " (0 = only after High findings), and minimum seconds between two "
+                    + "saves, default " + checkpointWindow);
+            System.out.println("\tmetrics-port = Serve scan metrics in Prometheus format on "
+                    + "http://127.0.0.1:PORT/metrics, they are always available over JMX");
+            System.out.println("\tresume = Carry on from the journal next to the session file of a run that died, "
+                    + "skipping URLs, request shapes and issues it already finished");
+            System.out.println("\tndjson = Also write each issue as a JSON line to FILE while scanning, with "
+                    + "ndjson-messages including the base64 request and response");
+            System.out.println("\tissue-store = Also store issues in a JDBC database such as jdbc:sqlite:issues.db or "
+                    + "jdbc:h2:./issues, the driver jar must be on Burp's classpath");
+            System.out.println("\trun-id = Run the stored issues belong to, default OUTNAME-yyyyMMdd-HHmmss, a "
+                    + "resumed run keeps the one it started with");
+            System.out.println("\tquiet-window = Seconds a spider's request rate must stay near zero before it "
+                    + "is done, default " + delay);
+            System.out.println("\tlatency-report = Seconds between callback and target response time percentiles "
+                    + "on STDOUT, default " + latencyReport + " (0 = only when Burp closes)");
             System.exit(1);
         }
 
         try {
-
-            // If URL doesn't start with a protocol, prepend one
-            if (args[0].startsWith("http")) {
-                url = new URL(args[0]);
-            } else {
-                url = new URL("http://" + args[0]);
+            if (options.containsKey("concurrency")) {
+                concurrency = Math.max(1, Integer.parseInt(options.get("concurrency")));
             }
-
-            if (url.getPort() == -1) // Java reverts to port=-1 if not explicitly specified
-            {
-                url = new URL(url.getProtocol(), url.getHost(), url.getDefaultPort(), url.getFile());
+            if (options.containsKey("max-active-scans")) {
+                maxActiveScans = Math.max(1, Integer.parseInt(options.get("max-active-scans")));
             }
-
-            if (url.getFile() == "") // Java will assume a blank path if you do not supply one
-            {
-                url = new URL(url.getProtocol(), url.getHost(), url.getPort(), "/");
+            if (options.containsKey("max-per-shape")) {
+                maxPerShape = Math.max(1, Integer.parseInt(options.get("max-per-shape")));
+            }
+            if (options.containsKey("max-per-cluster")) {
+                maxPerCluster = Math.max(0, Integer.parseInt(options.get("max-per-cluster")));
+            }
+            resume = options.containsKey("resume");
+            if (options.containsKey("quiet-window")) {
+                quietWindow = Math.max(1, Integer.parseInt(options.get("quiet-window")));
+            }
+            if (options.containsKey("latency-report")) {
+                latencyReport = Math.max(0, Integer.parseInt(options.get("latency-report")));
+            }
+            if (options.containsKey("metrics-port")) {
+                metricsPort = Integer.parseInt(options.get("metrics-port"));
+            }
+            if (options.containsKey("checkpoint-interval")) {
+                checkpointInterval = Math.max(0, Integer.parseInt(options.get("checkpoint-interval")));
+            }
+            if (options.containsKey("checkpoint-window")) {
+                checkpointWindow = Math.max(0, Integer.parseInt(options.get("checkpoint-window")));
+            }
+            if (options.containsKey("passive-threads")) {
+                passiveThreads = Math.max(1, Integer.parseInt(options.get("passive-threads")));
             }
 
-            outsession = new File(args[1] + ".zip");
-
-            File aFile = new File(args[1] + "_issues.html");
-            outissues = new BufferedWriter(new FileWriter(aFile, aFile.exists()));
-            outissues.write(header);
-
-            // Date and reporter
-            Date currentDate = new java.util.Date();
-            outissues.write("<body>\n"
-                    + "<span class=\"TEXT\">Report generated by <a href=\"http://portswigger.net/scanner\">Burp Scanner Headless plugin</a> at "
-                    + currentDate.toString() + "</span><br><br>\n" + "<hr>\n" + "<h1>Contents</h1>");
-
-            outissues.write(alertTypes);
+            if (targetList != null) {
+                targets.addAll(Target.load(new File(targetList)));
+                if (targets.isEmpty()) {
+                    System.out.println("No targets found in " + targetList);
+                    System.exit(1);
+                }
 
-            // URLs
-            aFile = new File(args[1] + "_urls.html");
-            outurls = new BufferedWriter(new FileWriter(aFile, aFile.exists()));
+                // One Burp session holds the results of all targets
+                String name = new File(targetList).getName();
+                outsession = new File(name.indexOf('.') > 0 ? name.substring(0, name.indexOf('.')) + ".zip"
+                        : name + ".zip");
+            } else {
+                targets.add(new Target(positional.get(0), positional.get(1),
+                        positional.size() == 3 ? positional.get(2) : null));
+                outsession = new File(positional.get(1) + ".zip");
+            }
 
-            if (args.length == 3) // Set cookies if supplied
-            {
-                cookies = "Cookie: " + args[2];
+            for (Target target : targets) {
+                openTarget(target);
+                if (!targetsByHost.containsKey(target.getHost())) {
+                    targetsByHost.put(target.getHost(), target);
+                } else {
+                    System.out.println("Host " + target.getHost() + " is listed more than once, its URLs and issues "
+                            + "go to " + targetsByHost.get(target.getHost()).outname);
+                }
+            }
+            issueWriter.addSink(new HtmlIssueSink());
+            if (options.containsKey("ndjson")) {
+                issueWriter.addSink(new NdjsonIssueSink(new File(options.get("ndjson")), resume,
+                        options.containsKey("ndjson-messages")));
             }
         } catch (java.net.MalformedURLException e) {
-            System.out.println("Error converting string '" + args[0] + "' into URL: " + e.getMessage());
+            System.out.println("Error converting target into URL: " + e.getMessage());
             System.exit(2);
         } catch (IOException e) {
             System.out.println("Error during IO: " + e.getMessage());
@@ -152,83 +241,255 @@ public class BurpExtender implements IBurpExtender {
         return;
     }
 
+    // Open the issue report and URL list of a target
+    private void openTarget(final Target target) throws IOException {
+        File aFile = new File(target.outname + "_issues.html");
+        boolean resumed = resume && aFile.length() > 0;
+        target.outissues = new BufferedWriter(new FileWriter(aFile, aFile.exists()));
+        target.classifier = IssueClassifier.load(issueTypes);
+
+        // A resumed report carries on below the issues already in it, numbering continues from the journal
+        Date currentDate = new java.util.Date();
+        if (resumed) {
+            target.outissues.write("\n<br>\n<hr>\n<span class=\"TEXT\">Scan resumed at " + currentDate.toString()
+                    + "</span><br>\n");
+            aFile = new File(target.outname + "_urls.html");
+            target.outurls = new BufferedWriter(new FileWriter(aFile, aFile.exists()));
+            return;
+        }
+        target.outissues.write(header);
+
+        // Date and reporter
+        target.outissues.write("<body>\n"
+                + "<span class=\"TEXT\">Report generated by <a href=\"http://portswigger.net/scanner\">Burp Scanner Headless plugin</a> at "
+                + currentDate.toString() + "</span><br><br>\n" + "<hr>\n" + "<h1>Contents</h1>");
+
+        List<String> categories = target.classifier.getCategories();
+        for (int i = 0; i < categories.size(); i++) {
+            target.outissues.write("<p class=\"TOCH0\"><a href=\"#" + (i + 1) + "\">" + (i + 1) + ". "
+                    + categories.get(i) + "</a></p>");
+        }
+
+        // URLs
+        aFile = new File(target.outname + "_urls.html");
+        target.outurls = new BufferedWriter(new FileWriter(aFile, aFile.exists()));
+    }
+
+    // Target a host belongs to, hosts that are not listed go to the first target
+    Target targetFor(final String host) {
+        Target target = host == null ? null : targetsByHost.get(host.toLowerCase());
+        return target != null ? target : targets.get(0);
+    }
+
     // This function is called a single time as Burp Suite loads and needs to return
     @Override
     public void registerExtenderCallbacks(final IBurpExtenderCallbacks callbacks) {
         mcallBacks = callbacks;
-
-        for (int i = 0; i < 20; i++) {
-            issueCounter[i] = 1;
+        shapes = new ShapeIndex(maxPerShape);
+        scheduler = new ActiveScanScheduler(mcallBacks, scanqueue, shapes, maxActiveScans);
+        issueIndex = new IssueIndex(mcallBacks.getHelpers());
+        passive = new PassiveDispatcher(mcallBacks, passiveThreads, 1024, 32);
+        if (options.containsKey("passive-skip-types")) {
+            passive.setSkipTypes(options.get("passive-skip-types").split(","));
+        }
+        if (options.containsKey("passive-skip-extensions")) {
+            passive.setSkipExtensions(options.get("passive-skip-extensions").split(","));
+        }
+        if (options.containsKey("passive-max-body")) {
+            passive.setMaxBodyBytes(Integer.parseInt(options.get("passive-max-body")));
         }
+        if (options.containsKey("passive-max-duplicates")) {
+            passive.setMaxDuplicates(Math.max(0, Integer.parseInt(options.get("passive-max-duplicates"))));
+        }
+        passive.start();
+        metrics.start(metricsPort);
 
         mcallBacks.setProxyInterceptionEnabled(false);
         mcallBacks.setExtensionName("Headless scanning");
+        mcallBacks.registerExtensionStateListener(this);
+        openJournal();
+        issueWriter.start();
+
+        // Scope rules are added through the matcher so it can answer for Burp, it listens before the configuration is
+        // restored so scope changes coming with it are seen
+        scope = new ScopeMatcher(mcallBacks);
+        mcallBacks.registerScopeChangeListener(scope);
 
         mcallBacks.issueAlert("Attempting to restore state from '" + restoreState + "'");
         try {
             mcallBacks.restoreState(restoreState);
+            if (restoreState.exists()) {
+                scope.deferToBurp("Restored '" + restoreState + "' may hold scope rules");
+            }
         } catch (Exception e) {
             System.out.println("Unable to restore state from '" + restoreState + "': " + e.getMessage());
             mcallBacks.exitSuite(false); // Unconditional exit
         }
 
-        mcallBacks.issueAlert("Adding " + url.getHost() + " to scope, spider and scanner");
-        if (cookies != null) {
-            mcallBacks.issueAlert("Including '" + cookies
-                    + "' to all in-scope requests. This will not appear in Burp's logs.");
-        } else {
-            mcallBacks.issueAlert("No cookies provided, using cookies provided during spider");
+        checkpointer = new Checkpointer(mcallBacks, outsession, checkpointInterval, checkpointWindow);
+        checkpointer.start();
+
+        // Every target counts its spider requests, a spider can reach another target's host before it is started
+        for (Target target : targets) {
+            target.activity = new ActivityTracker(clock, quietWindow > 0 ? quietWindow : delay, TimeUnit.SECONDS);
+            target.clusters = new PageClusters(maxPerCluster);
+        }
+
+        for (Target target : targets) {
+            mcallBacks.issueAlert("Adding " + target.url.getHost() + " to scope, spider and scanner");
+            if (target.cookies != null) {
+                mcallBacks.issueAlert("Including '" + target.cookies + "' to all in-scope requests for "
+                        + target.url.getHost() + ". This will not appear in Burp's logs.");
+            } else {
+                mcallBacks.issueAlert("No cookies provided, using cookies provided during spider");
+            }
+
+            try {
+                URL urlScope = new URL(target.url.getProtocol(), target.url.getHost(), target.url.getPort(), "/");
+                scope.include(urlScope);
+            } catch (Exception e) {
+                System.out.println("Could not add URL to scope, quitting: " + e.getMessage());
+                mcallBacks.exitSuite(false); // Unconditional exit
+            }
+        }
+
+        // Further targets are started by the monitor as earlier ones finish spidering
+        for (int i = 0; i < Math.min(concurrency, targets.size()); i++) {
+            startSpider(targets.get(i));
         }
 
+        startMonitor();
+
+        return;
+    }
+
+    // The journal lives next to the session file, a resumed run loads it and appends to it. Without one the run
+    // goes on, but cannot be resumed.
+    private void openJournal() {
+        journal = new Journal(new File(outsession.getPath() + ".journal"));
         try {
-            URL urlScope = new URL(url.getProtocol(), url.getHost(), url.getPort(), "/");
-            if (!mcallBacks.isInScope(urlScope)) {
-                mcallBacks.includeInScope(urlScope);
+            if (resume) {
+                journal.load();
+                for (Target target : targets) {
+                    List<Long> urls = journal.urls.get(target.outname);
+                    if (urls != null) {
+                        for (long url : urls) {
+                            target.urlsSeen.add(url);
+                        }
+                    }
+                }
+                for (long signature : journal.shapes) {
+                    shapes.scanned(signature);
+                }
+                for (Target target : targets) {
+                    Map<Integer, Integer> numbers = journal.numbers.get(target.outname);
+                    if (numbers != null) {
+                        for (Map.Entry<Integer, Integer> number : numbers.entrySet()) {
+                            target.classifier.restore(number.getKey(), number.getValue());
+                        }
+                    }
+                }
+                for (Journal.Record record : journal.records) {
+                    issueIndex.record(record.fingerprint, record.name, record.url);
+                }
+                mcallBacks.issueAlert("Resuming from journal with " + journal.getEntries() + " entries: "
+                        + journal.shapes.size() + " request shapes scanned, " + journal.issues.size()
+                        + " issues reported, " + issueIndex.getFolded() + " repeats folded");
             }
+            journal.open(resume);
+        } catch (IOException e) {
+            System.out.println("Could not open journal, scanning without one: " + e.getMessage());
+        }
 
-            lastRequest = new Date();
-            mcallBacks.issueAlert("Starting spider on " + url + " at " + lastRequest);
-            mcallBacks.sendToSpider(url);
-            // mcallBacks.sendToSpider(urlScope);
-        } catch (Exception e) {
-            System.out.println("Could not add URL to scope and spider, quitting: " + e.getMessage());
-            mcallBacks.exitSuite(false); // Unconditional exit
+        openIssueStore();
+        scanqueue.setJournal(journal);
+        issueWriter.addSink(journal);
+    }
+
+    // Issues go to the --issue-store database under one run id. A resumed run keeps the id its journal recorded, so
+    // the rows of one scan are not split over two runs.
+    private void openIssueStore() {
+        if (!options.containsKey("issue-store")) {
+            return;
         }
 
+        String runId = options.get("run-id");
+        if (runId == null && resume) {
+            runId = journal.runId;
+        }
+        if (runId == null) {
+            String session = outsession.getName();
+            runId = session.substring(0, session.length() - ".zip".length()) + "-"
+                    + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        }
+        if (!runId.equals(journal.runId)) {
+            journal.run(runId);
+        }
+
+        try {
+            issueWriter.addSink(new JdbcIssueSink(options.get("issue-store"), runId));
+            System.out.println("Storing issues in " + options.get("issue-store") + " as run " + runId);
+        } catch (SQLException e) {
+            System.out.println("Could not open issue store, continuing without it: " + e.getMessage());
+        }
         return;
     }
 
+    private void startSpider(final Target target) {
+        try {
+            target.activity.start();
+            target.spiderStarted = true;
+            mcallBacks.issueAlert("Starting spider on " + target.url + " at " + new Date());
+            mcallBacks.sendToSpider(target.url);
+        } catch (Exception e) {
+            System.out.println("Could not spider " + target.url + ", skipping it: " + e.getMessage());
+            target.spiderComplete = true;
+        }
+    }
+
     // Called each time a HTTP request or HTTP reply is generated from a Burp tool
     public void processHttpMessage(final String toolName, final boolean messageIsRequest,
             IHttpRequestResponse messageInfo) {
+        long start = System.nanoTime();
 
         // Spider Reply: Add URL to passive and active scan
         if (toolName.equals("spider")) {
 
+            Target target = targetFor(messageInfo.getHttpService().getHost());
             if (messageIsRequest) {
 
                 // Update last request time and append cookies to request
-                lastRequest = new Date();
-                messageInfo = appendCookies(messageInfo);
+                metrics.spiderRequests.increment();
+                target.activity.record();
+                long cookies = System.nanoTime();
+                messageInfo = appendCookies(messageInfo, target);
+                long sent = System.nanoTime();
+                latencies.appendCookies.record(sent - cookies);
+                latencies.requestSent(messageInfo, sent);
             }
             // Scan and save URLS that are not 404 (Not Found)
             else {
 
-                // Create a single instance of a monitorThread
-                if (!monitorThread) {
-                    monitorThread = true;
-                    monitorScan(messageInfo);
-                }
                 // Send message to passive and active scanner
-                else {
-                    spiderToScanner(messageInfo);
-                }
+                latencies.responseReceived(messageInfo, start);
+                metrics.spiderResponses.increment();
+                String messageUrl = getHostFromRespone(messageInfo);
+                long scan = System.nanoTime();
+                spiderToScanner(messageInfo, messageUrl, target);
+                latencies.spiderToScanner.record(System.nanoTime() - scan);
 
                 try {
 
-                    // Write URL to file (Would be nice to include Request body after tab)
+                    // Write URL to file once (Would be nice to include Request body after tab)
                     if (mcallBacks.getHelpers().analyzeResponse(messageInfo.getResponse()).getStatusCode() != 404) {
-                        outurls.write(getHostFromRespone(messageInfo) + "\n");
+                        long urlHash = Hashing.hash64(messageUrl);
+                        if (target.urlsSeen.add(urlHash)) {
+                            target.outurls.write(messageUrl + "\n");
+                            journal.url(target.outname, urlHash);
+                            metrics.reportCharacters.add(messageUrl.length() + 1);
+                        } else {
+                            target.urlsSuppressed.incrementAndGet();
+                        }
                     }
                 } catch (Exception e) {
                     System.out.println("Could not add URL to file: " + e.getMessage());
@@ -237,36 +498,146 @@ public class BurpExtender implements IBurpExtender {
             }
         }
 
+        latencies.processHttpMessage(toolName, messageIsRequest).record(System.nanoTime() - start);
         return;
     }
 
     // Called whenever a scan issue occurs
     public void newScanIssue(final IScanIssue issue) {
+        long start = System.nanoTime();
         try {
 
+            metrics.issue(issue.getSeverity());
+
+            // Repeats of an issue already reported are only counted, and listed at the end of the report. Counts are
+            // journaled, a resumed run starts from them and does not count again what the earlier run counted.
+            long fingerprint = issueIndex.fingerprint(issue);
+            boolean counted = resume
+                    && journal.recorded.count(Journal.issueFingerprint(issue.getIssueName(), issue.getUrl())) > 0;
+            if (!counted) {
+                journal.record(fingerprint, issue.getIssueName(), issue.getUrl());
+            }
+            if (counted ? !issueIndex.isFirst(fingerprint, issue.getUrl())
+                    : issueIndex.record(fingerprint, issue) > 1) {
+                latencies.newScanIssue.record(System.nanoTime() - start);
+                return;
+            }
+
             // Filter Information issue messages to STDOUT
-            if (issue.getSeverity() != "Information") {
+            if (!"Information".equals(issue.getSeverity())) {
                 System.out.println("scanner: " + issue.getSeverity() + " " + issue.getIssueName() + ": "
                         + issue.getUrl());
             }
-            // Save session each time a High Finding is found
-            else if (issue.getSeverity() == "High") {
-                mcallBacks.saveState(outsession);
+
+            // Checkpoint the session soon after a High finding, saved on the checkpoint thread
+            if ("High".equals(issue.getSeverity()) && checkpointer != null) {
+                checkpointer.request();
             }
 
-            outissues.write(generateHTMLissue(issue));
+            // Rendered and written by the issue writer thread, unless a resumed run already reported it
+            if (!resume || journal.issues.count(Journal.issueFingerprint(issue.getIssueName(), issue.getUrl())) == 0) {
+                issueWriter.submit(new IssueRecord(issue));
+            }
 
         } catch (Exception e) {
-            System.out.println("Error writing to issue file: " + e.getMessage());
+            System.out.println("Error queueing issue for the issue file: " + e.getMessage());
         }
 
+        latencies.newScanIssue.record(System.nanoTime() - start);
         return;
     }
 
-    private String generateHTMLissue(final IScanIssue issue) {
+    // Writes issues into the HTML report of their target, only called from the issue writer thread
+    private class HtmlIssueSink implements IssueSink {
+        public void write(final IssueRecord issue) throws IOException {
+            PipelineEvents.IssueWrite event = new PipelineEvents.IssueWrite();
+            event.begin();
+            Target target = targetFor(issue.url == null ? null : issue.url.getHost());
+            String htmlIssue = generateHTMLissue(issue, target);
+            target.outissues.write(htmlIssue);
+            int type = target.classifier.classify(issue.issueName);
+            journal.numbered(target.outname, type, (int) target.classifier.count(type));
+            metrics.reportCharacters.add(htmlIssue.length());
+            if (event.shouldCommit()) {
+                event.url = String.valueOf(issue.url);
+                event.host = target.getHost();
+                event.issue = issue.severity + " " + issue.issueName;
+                event.writtenBytes = htmlIssue.length();
+                event.outcome = "written to " + target.outname + "_issues.html";
+                event.commit();
+            }
+        }
+
+        public void flush() throws IOException {
+            for (Target target : targets) {
+                target.outissues.flush();
+            }
+        }
+
+        // Repeated issues are listed once per target with their count, then the reports are closed
+        public void close() throws IOException {
+            if (issueIndex != null) {
+                for (IssueIndex.Occurrence occurrence : issueIndex.duplicates()) {
+                    Target target = targetFor(occurrence.url == null ? null : occurrence.url.getHost());
+                    if (!target.consolidated) {
+                        target.consolidated = true;
+                        target.outissues.write("\n<br>\n<hr>\n<h1>Repeated issues</h1>\n"
+                                + "<table cellpadding=\"5\" cellspacing=\"0\">\n<tr><td><b>Issue</b></td>"
+                                + "<td><b>Occurrences</b></td><td><b>First reported at</b></td>"
+                                + "<td><b>Also reported at, sample</b></td></tr>\n");
+                    }
+                    StringBuilder samples = new StringBuilder();
+                    for (String sample : occurrence.getSamples()) {
+                        samples.append(sample).append("<br>");
+                    }
+                    String row = "<tr><td>" + occurrence.name + "</td><td>" + occurrence.count.get() + "</td><td>"
+                            + occurrence.url + "</td><td>" + samples + "</td></tr>\n";
+                    target.outissues.write(row);
+                    metrics.reportCharacters.add(row.length());
+                }
+            }
+
+            for (Target target : targets) {
+                if (target.consolidated) {
+                    target.outissues.write("</table>\n");
+                }
+                target.outissues.close();
+            }
+        }
+    }
+
+    // Groups of near-identical pages at the end of the URL list, largest first, as # lines
+    void writeClusters(final Target target) throws IOException {
+        List<PageClusters.Cluster> repeated = target.clusters == null ? null : target.clusters.repeated();
+        if (repeated == null || repeated.isEmpty()) {
+            return;
+        }
+
+        StringBuilder text = new StringBuilder(128 + repeated.size() * 64);
+        text.append("\n# Near-identical pages: ").append(target.clusters.getPages()).append(" pages in ")
+                .append(target.clusters.getClusters()).append(" groups, ").append(target.clusters.getSkipped())
+                .append(" not actively scanned\n# Pages\tActively scanned\tFirst page\n");
+        for (PageClusters.Cluster cluster : repeated) {
+            text.append("# ").append(cluster.getPages()).append('\t').append(cluster.getScanned()).append('\t')
+                    .append(cluster.url).append('\n');
+        }
+        target.outurls.write(text.toString());
+        metrics.reportCharacters.add(text.length());
+    }
+
+    String generateHTMLissue(final IssueRecord issue, final Target target) {
+
+        // Everything that can fail comes before the number, an issue that is not written must not use one up and
+        // break the previous and next links. Issues may come without messages or URL.
+        String requestHeaders = issue.request == null ? ""
+                : mcallBacks.getHelpers().analyzeRequest(issue.request).getHeaders().toString();
+        String responseHeaders = issue.response == null ? ""
+                : mcallBacks.getHelpers().analyzeResponse(issue.response).getHeaders().toString();
+        String host = issue.url == null ? "" : issue.url.getHost();
+        String path = issue.url == null ? "" : issue.url.getPath();
 
-        int type = getType(issue.getIssueName());
-        int counter = issueCounter[type];
+        int type = target.classifier.classify(issue.issueName);
+        int counter = target.classifier.next(type);
 
         // reference
         String refid = counter == 1 ? "" + type : type + "." + counter;
@@ -279,76 +650,30 @@ public class BurpExtender implements IBurpExtender {
 
         String id = type + "." + counter + " ";
 
-        String recommendation = issue.getRemediationDetail() == null ? "Unknown" : issue.getRemediationDetail();
+        String recommendation = issue.remediationDetail == null ? "Unknown" : issue.remediationDetail;
 
-        String htmlIssue = "\n<br>\n<hr>\n<span class=\"BODH1\" id=" + refid + ">" + id + issue.getUrl() + "</span>\n"
+        String htmlIssue = "\n<br>\n<hr>\n<span class=\"BODH1\" id=" + refid + ">" + id + issue.url + "</span>\n"
                 + "&nbsp;<a class=\"PREVNEXT\" href=\"#" + prev + "\">previous</a>\n"
                 + "&nbsp;<a class=\"PREVNEXT\" href=\"#" + next + "\">next</a>" + "<br>\n" + "<h2>Summary</h2>\n"
                 + "<table cellpadding=\"0\" cellspacing=\"0\">\n" + "<tr>\n" + "<td>Severity:&nbsp;&nbsp;</td>\n"
-                + "<td><b>" + issue.getSeverity() + "</b></td>\n" + "</tr>\n" + "<tr>\n"
-                + "<td>Confidence:&nbsp;&nbsp;</td>\n" + "<td><b>" + issue.getConfidence() + "</b></td>\n" + "</tr>\n"
-                + "<tr>\n" + "<td>Host:&nbsp;&nbsp;</td>\n" + "<td><b>" + issue.getUrl().getHost() + "</b></td>\n"
-                + "</tr>\n" + "<tr>\n" + "<td>Path:&nbsp;&nbsp;</td>\n" + "<td><b>" + issue
-                .getUrl().getPath() + "</b></td>\n" + "</tr>\n" + "</table>\n" + "<h2>Issue detail</h2>\n"
-                + "<span class=\"TEXT\">" + issue.getIssueDetail() + "</span>" + "<h2>Background</h2>\n"
-                + "<span class=\"TEXT\">" + issue.getIssueBackground() + "</span>" + "<h2>Remediation</h2>\n"
-                + "<span class=\"TEXT\">" + issue.getRemediationBackground() + "</span>"
+                + "<td><b>" + issue.severity + "</b></td>\n" + "</tr>\n" + "<tr>\n"
+                + "<td>Confidence:&nbsp;&nbsp;</td>\n" + "<td><b>" + issue.confidence + "</b></td>\n" + "</tr>\n"
+                + "<tr>\n" + "<td>Host:&nbsp;&nbsp;</td>\n" + "<td><b>" + host + "</b></td>\n"
+                + "</tr>\n" + "<tr>\n" + "<td>Path:&nbsp;&nbsp;</td>\n" + "<td><b>" + path
+                + "</b></td>\n" + "</tr>\n" + "</table>\n" + "<h2>Issue detail</h2>\n"
+                + "<span class=\"TEXT\">" + issue.issueDetail + "</span>" + "<h2>Background</h2>\n"
+                + "<span class=\"TEXT\">" + issue.issueBackground + "</span>" + "<h2>Remediation</h2>\n"
+                + "<span class=\"TEXT\">" + issue.remediationBackground + "</span>"
                 + "<h2>Remediation details</h2>\n" + "<span class=\"TEXT\">" + recommendation + "</span>"
                 + "\n<h2>Request</h2>\n"
                 + "<div class=\"RR_SCROLL\"><table class=\"RR_TABLE_SCREEN\" cellpadding=\"5\" cellspacing=\"0\"><tr><td><span>"
-                + mcallBacks.getHelpers().analyzeRequest(issue.getHttpMessages()[0].getRequest()).getHeaders()
-                .toString() + "</span></td></tr></table></div>" + "\n<h2>Response</h2>\n"
+                + requestHeaders + "</span></td></tr></table></div>" + "\n<h2>Response</h2>\n"
                 + "<div class=\"RR_SCROLL\"><table class=\"RR_TABLE_SCREEN\" cellpadding=\"5\" cellspacing=\"0\"><tr><td><span>"
-                + mcallBacks.getHelpers().analyzeResponse(issue.getHttpMessages()[0].getResponse()).getHeaders()
-                .toString() + "</b><br></span></td></tr></table></div>" + "\n<br/>";
-
-        issueCounter[type]++;
+                + responseHeaders + "</b><br></span></td></tr></table></div>" + "\n<br/>";
 
         return htmlIssue;
     }
 
-    private int getType(final String type) {
-
-        // classify some of the most common vulnerabilities under a specific types
-        if (type.equals("SQL injection")) {
-            return 1;
-
-        } else if (type.equals("Password field with autocomplete enabled")) {
-            return 2;
-
-        } else if (type.equals("User agent-dependent response")) {
-            return 3;
-
-        } else if (type.equals("Cookie scoped to parent domain")) {
-            return 4;
-
-        } else if (type.equals("Cross-domain Referer leakage")) {
-            return 5;
-
-        } else if (type.equals("Cross-domain script include")) {
-            return 6;
-
-        } else if (type.equals("Cookie without HttpOnly flag set")) {
-            return 7;
-
-        } else if (type.equals("Email addresses disclosed")) {
-            return 8;
-
-        } else if (type.equals("Credit card numbers disclosed")) {
-            return 9;
-
-        } else if (type.equals("Content type incorrectly stated")) {
-            return 10;
-
-        } else if (type.equals("Robots.txt file")) {
-            return 11;
-
-        } else {
-            return 12;
-        }
-
-    }
-
     // Called during proxy requests, not needed with processHttpMessage
     public byte[] processProxyMessage(final int messageReference, final boolean messageIsRequest,
             final String remoteHost, final int remotePort, final boolean serviceIsHttps, final String httpMethod,
@@ -359,181 +684,319 @@ public class BurpExtender implements IBurpExtender {
 
     // Called when application is closed
     public void applicationClosing() {
-        try {
-            outurls.close();
-            outissues.close();
-        } catch (Exception e) {
-            System.out.println("Could not close files, quitting Burp Suite anyway: " + e.getMessage());
+        // Burp calls this on exit and extensionUnloaded calls it again, only the first call closes anything
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (passive != null) {
+            passive.close();
         }
 
+        // Drain queued issues before the files go away
+        issueWriter.close();
+        for (Target target : targets) {
+            try {
+                writeClusters(target);
+                target.outurls.close();
+            } catch (Exception e) {
+                System.out.println("Could not close files, quitting Burp Suite anyway: " + e.getMessage());
+            }
+        }
+        metrics.close();
+        System.out.print(latencies.report());
+
         return;
     }
 
+    // Called when the extension is unloaded without Burp exiting
+    public void extensionUnloaded() {
+        if (monitor != null) {
+            monitor.shutdownNow();
+        }
+        if (checkpointer != null) {
+            checkpointer.close();
+        }
+        applicationClosing();
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-    // Called for a single thread to keep an eye on Burp's spider log, quit after 1 minute of no activity
-    public int monitorScan(final IHttpRequestResponse messageInfo) {
+    // Schedule monitorScan on its own thread so Burp's HTTP callback threads are never held by it
+    private void startMonitor() {
+        monitor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("headless-monitor"));
+        lastLatencyReport = System.currentTimeMillis();
+        mcallBacks.issueAlert("Monitor thread started at " + new Date() + " and waiting for spider to complete");
+        monitor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                PipelineEvents.MonitorPoll event = new PipelineEvents.MonitorPoll();
+                event.begin();
+                monitorScan();
+                if (event.shouldCommit()) {
+                    event.inFlight = scanqueue.size();
+                    event.queued = scheduler.queued();
+                    event.passiveQueued = passive.queued();
+                    event.outcome = !spiderComplete ? "spidering" : monitor.isShutdown() ? "complete" : "scanning";
+                    event.commit();
+                }
+            }
+        }, pollInterval, pollInterval, TimeUnit.SECONDS);
+    }
+
+    // Called every pollInterval seconds by the monitor to keep an eye on Burp's spider log and scan queue
+    public void monitorScan() {
         try {
             Date currentTime = new Date();
-            mcallBacks.issueAlert("Monitor thread started at " + currentTime + " and waiting for spider to complete");
-
-            // Continue waiting while lastRequest happened less than 1 minute ago
-            while (lastRequest.getTime() + (delay * 100) > currentTime.getTime()) {
-                currentTime = new Date();
-                Thread.currentThread().yield();
-                Thread.currentThread().sleep(delay * 1000);
-            }
-
-            mcallBacks.issueAlert("Spidering complete at " + lastRequest + ", waiting for scanning completion");
-            while (scanqueue.size() != 0) {
-                Iterator<IScanQueueItem> iterator = scanqueue.iterator();
-                while (iterator.hasNext()) {
-                    try {
-                        IScanQueueItem isqi = iterator.next();
-
-                        // Remove scan item from queue if it is finished
-                        if (isqi.getPercentageComplete() == 100) {
-                            iterator.remove();
-                        } else if (isqi.getStatus() == "abandoned - too many errors"
-                                | isqi.getStatus() == "waiting to cancel") {
-                            iterator.remove();
-                        }
+            journal.flush();
+
+            if (latencyReport > 0 && lastLatencyReport + (latencyReport * 1000L) <= currentTime.getTime()) {
+                lastLatencyReport = currentTime.getTime();
+                System.out.print(latencies.report());
+            }
+
+            // Continue waiting until a target's spider request rate has stayed near zero for the quiet window,
+            // sampled every poll, and start the next targets as spiders finish
+            if (!spiderComplete) {
+                int spidering = 0;
+                for (Target target : targets) {
+                    if (!target.spiderStarted || target.spiderComplete) {
+                        continue;
+                    }
+                    target.activity.sample();
+                    if (!target.activity.isQuiescent()) {
+                        spidering++;
+                        continue;
                     }
-                    // See http://javabeanz.wordpress.com/2007/06/29/iterator-vs-enumeration/
-                    catch (ConcurrentModificationException e) {
-                        System.out.println("ConcurrentModificationException in monitorScan: " + e.getMessage());
-                        break;
+
+                    target.spiderComplete = true;
+                    Date lastRequest = new Date(currentTime.getTime()
+                            - TimeUnit.NANOSECONDS.toMillis(target.activity.getIdleNanos()));
+                    mcallBacks.issueAlert("Spidering " + target.url + " complete at " + lastRequest + ", "
+                            + target.activity.getRequests() + " requests, " + target.urlsSeen.size()
+                            + " unique URLs written, " + target.urlsSuppressed.get() + " duplicates suppressed");
+                }
+
+                for (Target target : targets) {
+                    if (!target.spiderStarted && spidering < concurrency) {
+                        startSpider(target);
+                        spidering++;
                     }
                 }
 
-                currentTime = new Date();
-                mcallBacks.issueAlert(scanqueue.size() + " remaining objects in scan queue at " + currentTime);
+                if (spidering > 0) {
+                    return;
+                }
+
+                spiderComplete = true;
+                mcallBacks.issueAlert("Spidering complete for " + targets.size() + " targets, " + shapes.getShapes()
+                        + " request shapes actively scanned, " + shapes.getSkipped()
+                        + " repeated shapes not actively scanned, " + passive.getFiltered()
+                        + " responses not passively scanned, " + passive.getDuplicates()
+                        + " duplicate bodies (" + passive.getDuplicateBytes() + " bytes) skipped, "
+                        + nearDuplicates() + " near-identical pages not actively scanned, " + scheduler.getDropped()
+                        + " low-priority requests dropped from the full scan queue");
+                mcallBacks.issueAlert("Waiting for scanning completion");
+            }
 
-                // Wait another 1 minute for completion
-                Thread.currentThread().yield();
-                Thread.currentThread().sleep(delay * 1000);
+            // Only items still running are polled, the scheduler refills the free slots, finish as soon as the
+            // last one is done
+            scanqueue.poll();
+            scheduler.topUp();
+            if (!scheduler.isIdle() || !passive.isIdle()) {
+                if (lastReport + (delay * 1000) <= currentTime.getTime()) {
+                    lastReport = currentTime.getTime();
+                    mcallBacks.issueAlert(scanqueue.size() + " remaining objects in scan queue, "
+                            + scheduler.queued() + " waiting to be scanned, " + passive.queued()
+                            + " waiting for passive scanning at " + currentTime);
+                }
+                return;
             }
 
             // Save results and quit
-            currentTime = new Date();
-            mcallBacks.issueAlert("Scanning complete at " + currentTime + ". Saving session results to " + outsession);
-            mcallBacks.saveState(outsession);
+            monitor.shutdown();
+            mcallBacks.issueAlert("Scanning complete at " + currentTime + ", " + scanqueue.getFinished()
+                    + " scan items finished, " + issueIndex.getFolded() + " repeated issues folded into "
+                    + issueIndex.duplicates().size() + " report entries, " + checkpointer.getSaves()
+                    + " checkpoints saved. Saving session results to " + outsession);
+            checkpointer.close();
+            checkpointer.save();
             mcallBacks.exitSuite(scanQuit);
         } catch (Exception e) {
             System.out.println("Monitor thread encountered an unrecoverable error, saving files and quitting:"
                     + e.getMessage());
+            monitor.shutdown();
 
             // We might not be able to save our session, but try just in case
             try {
-                mcallBacks.saveState(outsession);
+                checkpointer.close();
+                checkpointer.save();
             } catch (Exception exception) {
                 exception.printStackTrace();
             }
 
             mcallBacks.exitSuite(scanQuit);
-            return 1;
         }
 
-        return 0;
+        return;
     }
 
     // Called for each spider server reply to pass message on to passive/active scanning
-    private void spiderToScanner(final IHttpRequestResponse messageInfo) {
+    private void spiderToScanner(final IHttpRequestResponse messageInfo, final String messageUrl,
+            final Target target) {
         try {
 
-            // Passively test everything
-            Boolean serviceIsHttps = messageInfo.getHttpService().getProtocol() == "https" ? true : false;
-            mcallBacks.doPassiveScan(messageInfo.getHttpService().getHost(), messageInfo.getHttpService().getPort(),
-                serviceIsHttps, messageInfo.getRequest(), messageInfo.getResponse());
-
-            URL myURL = new URL(getHostFromRespone(messageInfo));
+            // Passively test everything that can hold findings, submitted by the passive worker threads
+            PipelineEvents.PassiveDispatch dispatch = new PipelineEvents.PassiveDispatch();
+            dispatch.begin();
+            String host = messageInfo.getHttpService().getHost();
+            boolean serviceIsHttps = "https".equals(messageInfo.getHttpService().getProtocol());
+            byte[] request = messageInfo.getRequest();
+            byte[] response = messageInfo.getResponse();
+            URL myURL = new URL(messageUrl);
+            boolean queued = passive.dispatch(host, messageInfo.getHttpService().getPort(), serviceIsHttps, request,
+                    response, myURL.getPath());
+            if (dispatch.shouldCommit()) {
+                dispatch.url = messageUrl;
+                dispatch.host = host;
+                dispatch.requestBytes = request == null ? 0 : request.length;
+                dispatch.responseBytes = response == null ? 0 : response.length;
+                dispatch.outcome = queued ? "queued" : "skipped";
+                dispatch.commit();
+            }
 
             // Only actively test items in scope
-
-            if (mcallBacks.isInScope(myURL)) {
-                boolean activescan = false;
-                boolean inqueue = false;
-                byte[] request = messageInfo.getRequest();
-                mcallBacks.getHelpers().analyzeRequest(request);
-
-                List<IParameter> parameterList = mcallBacks.getHelpers().analyzeRequest(messageInfo.getRequest())
-                                                           .getParameters();
-
-                boolean inUrl = false;
-                for (int i = 0; i < parameterList.size(); i++) {
-                    IParameter iParameter = parameterList.get(i);
-
-                    if (iParameter.getType() == IParameter.PARAM_URL) {
-                        inUrl = true;
-                    }
-
-                    if (iParameter.getType() == IParameter.PARAM_COOKIE && inUrl) {
-                        activescan = true;
-                        break;
-                    }
-
+            PipelineEvents.ActiveScanAdmission admission = new PipelineEvents.ActiveScanAdmission();
+            admission.begin();
+            String outcome = "out of scope";
+            if (scope.isInScope(messageInfo.getHttpService(), request)) {
+
+                // Group near-identical pages, only a few of each group are actively scanned
+                PageClusters.Cluster cluster = null;
+                if (response != null
+                        && !passive.isFiltered(response, HttpBytes.headersEnd(response), myURL.getPath())) {
+                    cluster = target.clusters.assign(response, messageUrl);
                 }
-
-                // Perform active testing only of URL has non cookie parameters
-                if (activescan) {
-
-                    // Add to active scan list and scan vector
-                    IScanQueueItem isqi = mcallBacks.doActiveScan(messageInfo.getHttpService().getHost(),
-                            messageInfo.getHttpService().getPort(), serviceIsHttps, messageInfo.getRequest());
-                    scanqueue.add(isqi);
+                IRequestInfo requestInfo = mcallBacks.getHelpers().analyzeRequest(request);
+                List<IParameter> parameterList = requestInfo.getParameters();
+
+                // Perform active testing only of URL has non cookie parameters, and only for the first few requests
+                // of the same shape and the first few pages of a group of near-identical pages. The group cap only
+                // applies to further requests of a shape already scanned, pages of different handlers sharing one
+                // layout fall in one group. A shape's slot is only used once the request is queued.
+                outcome = "no parameters";
+                if (isActiveScanCandidate(parameterList)) {
+                    outcome = "repeated shape";
+                    long signature = shapes.signature(host, request, parameterList);
+                    if (shapes.hasRoom(signature)) {
+                        outcome = "near-duplicate page";
+                        if (target.clusters.admit(cluster, shapes.isNew(signature))) {
+                            outcome = "repeated shape";
+                            if (shapes.admit(signature)) {
+
+                                // Queue for the active scanner, most valuable requests are handed to Burp first
+                                int priority = scheduler.priority(host, myURL.getPath(), parameterList.size(),
+                                        requestInfo.getContentType());
+                                scheduler.submit(host, messageInfo.getHttpService().getPort(), serviceIsHttps,
+                                        request, priority, signature);
+                                outcome = "queued";
+                            }
+                        }
+                    }
                 }
             }
+            if (admission.shouldCommit()) {
+                admission.url = messageUrl;
+                admission.host = host;
+                admission.requestBytes = request == null ? 0 : request.length;
+                admission.outcome = outcome;
+                admission.commit();
+            }
         } catch (Exception e) {
             System.out.println("Error in spiderToScanner:" + e.getMessage());
         }
     }
 
-    private String getHostFromRespone(final IHttpRequestResponse response) {
+    // Pages not actively scanned because enough of their group were, over all targets
+    long nearDuplicates() {
+        long skipped = 0;
+        for (Target target : targets) {
+            if (target.clusters != null) {
+                skipped += target.clusters.getSkipped();
+            }
+        }
+        return skipped;
+    }
+
+    // Parameter inspection deciding whether a spidered request goes to the active scanner
+    boolean isActiveScanCandidate(final List<IParameter> parameterList) {
+        boolean inUrl = false;
+        for (int i = 0; i < parameterList.size(); i++) {
+            IParameter iParameter = parameterList.get(i);
+
+            if (iParameter.getType() == IParameter.PARAM_URL) {
+                inUrl = true;
+            }
+
+            if (iParameter.getType() == IParameter.PARAM_COOKIE && inUrl) {
+                return true;
+            }
 
-        String re1 = "((?:[a-z][a-z0-9_]*))"; // Variable Name 1
-        Pattern p = Pattern.compile(re1, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-        Matcher m = p.matcher(url.toString());
-        String protocol = "http://";
-        if (m.find()) {
-            protocol = m.group(1) + "://";
         }
 
-        String hostname = protocol;
-        hostname = hostname
-                + mcallBacks.getHelpers().analyzeRequest(response.getRequest()).getHeaders().get(1).substring(6);
-        hostname = hostname
-                + mcallBacks.getHelpers().analyzeRequest(response.getRequest()).getHeaders().get(0).substring(4,
-                    mcallBacks.getHelpers().analyzeRequest(response.getRequest()).getHeaders().get(0).length() - 8);
-        return hostname;
+        return false;
+    }
 
+    // Full URL of the message's request, resolve it once per callback and hand it to every later stage
+    String getHostFromRespone(final IHttpRequestResponse response) {
+        PipelineEvents.UrlResolution event = new PipelineEvents.UrlResolution();
+        event.begin();
+        byte[] request = response.getRequest();
+        String url = UrlResolver.resolve(response.getHttpService(), request);
+        if (event.shouldCommit()) {
+            event.url = url;
+            event.host = response.getHttpService().getHost();
+            event.requestBytes = request == null ? 0 : request.length;
+            event.outcome = url.regionMatches(true, url.indexOf("://") + 3, event.host, 0, event.host.length())
+                    ? "resolved" : "host header differs";
+            event.commit();
+        }
+        return url;
     }
 
-    // Append/Modify HTTP cookies for all in-scope requests
-    private IHttpRequestResponse appendCookies(final IHttpRequestResponse messageInfo) {
+    // Append/Modify HTTP cookies for all in-scope requests of a target
+    IHttpRequestResponse appendCookies(final IHttpRequestResponse messageInfo, final Target target) {
+        PipelineEvents.CookieRewrite event = new PipelineEvents.CookieRewrite();
+        event.begin();
+        byte[] request = null;
+        byte[] rewritten = null;
+        String outcome = "no cookies";
         try {
-            URL myURL = new URL(getHostFromRespone(messageInfo));
 
             // If URL is in scope and we have cmdline specified cookies, append them to request
-            if ((cookies != null) && mcallBacks.isInScope(new URL(getHostFromRespone(messageInfo)))) {
-                byte[] request = messageInfo.getRequest();
-                String rrequestString = new String(request);
-
-                Pattern pattern = Pattern.compile("^Cookie:\\s(.*?)$",
-                        Pattern.DOTALL | Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-                Matcher matcher = pattern.matcher(rrequestString);
-                if (matcher.find()) {
-                    rrequestString = matcher.replaceFirst(cookies);
-                } else {
-                    pattern = Pattern.compile("\r\n\r\n");
-                    matcher = pattern.matcher(rrequestString);
-                    rrequestString = matcher.replaceFirst("\r\n" + cookies + "\r\n\r\n");
+            request = messageInfo.getRequest();
+            if (target.cookieRewriter != null) {
+                outcome = "out of scope";
+                if (scope.isInScope(messageInfo.getHttpService(), request)) {
+                    rewritten = target.cookieRewriter.rewrite(request);
+                    outcome = "unchanged";
+                    if (rewritten != request) {
+                        messageInfo.setRequest(rewritten);
+                        outcome = "rewritten";
+                    }
                 }
-
-                request = rrequestString.getBytes();
-                messageInfo.setRequest(request);
             }
         } catch (Exception e) {
             System.out.println("Error setting Cookie Header: " + e.getMessage());
+            outcome = "error";
+        }
+
+        if (event.shouldCommit()) {
+            event.url = request == null ? null : UrlResolver.resolve(messageInfo.getHttpService(), request);
+            event.host = messageInfo.getHttpService().getHost();
+            event.requestBytes = request == null ? 0 : request.length;
+            event.rewrittenBytes = rewritten == null ? event.requestBytes : rewritten.length;
+            event.outcome = outcome;
+            event.commit();
         }
 
         return messageInfo;
@@ -0,0 +1,133 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.File;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Saves the Burp session in the background so a crash does not lose the whole run. Saves happen every interval
+// seconds and shortly after a request (a High finding), but never more than once per window seconds, and always on
+// the checkpoint thread rather than on one of Burp's callback threads. Burp writes to a temporary file next to the
+// session which is then renamed over the previous checkpoint, so a crash mid-save leaves the last good one intact.
+public class Checkpointer {
+    private final IBurpExtenderCallbacks callbacks;
+    private final File session;
+    private final File partial;
+    private final long intervalMillis;
+    private final long windowMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicBoolean pending = new AtomicBoolean(); // A requested save is scheduled and not started yet
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long lastSave;                            // currentTimeMillis of the last save that started
+
+    public Checkpointer(final IBurpExtenderCallbacks callbacks, final File session, final int intervalSeconds,
+            final int windowSeconds) {
+        this.callbacks = callbacks;
+        this.session = session.getAbsoluteFile();
+        this.partial = new File(this.session.getParentFile(), this.session.getName() + ".tmp");
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(Math.max(0, intervalSeconds));
+        this.windowMillis = TimeUnit.SECONDS.toMillis(Math.max(0, windowSeconds));
+        this.executor = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("headless-checkpoint"));
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    // Periodic checkpoints, an interval of 0 only saves on request
+    public void start() {
+        lastSave = System.currentTimeMillis();
+        if (intervalMillis > 0) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    if (System.currentTimeMillis() - lastSave >= windowMillis) {
+                        checkpoint();
+                    }
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Safe to call from any thread, requests arriving before the scheduled save are folded into it
+    public void request() {
+        requests.incrementAndGet();
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+
+        long wait = Math.max(0, lastSave + windowMillis - System.currentTimeMillis());
+        try {
+            executor.schedule(new Runnable() {
+                public void run() {
+                    pending.set(false);
+                    checkpoint();
+                }
+            }, wait, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Shut down, the final save covers it
+            pending.set(false);
+        }
+    }
+
+    // Stop the background saves and wait for one in progress to finish, saves still waiting for their time are
+    // dropped. A save is not interrupted, so the caller's final save never overlaps one.
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            save();
+        } catch (Exception e) {
+            System.out.println("Unable to checkpoint session to '" + session + "': " + e.getMessage());
+        }
+    }
+
+    // Saves the session now on the calling thread, also used for the final save
+    public synchronized void save() throws Exception {
+        PipelineEvents.CheckpointSave event = new PipelineEvents.CheckpointSave();
+        event.begin();
+        String outcome = "failed";
+        try {
+            lastSave = System.currentTimeMillis();
+            Files.deleteIfExists(partial.toPath());
+            callbacks.saveState(partial);
+            try {
+                Files.move(partial.toPath(), session.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                outcome = "renamed";
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial.toPath(), session.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                outcome = "replaced, atomic rename not supported";
+            }
+            saves.incrementAndGet();
+        } finally {
+            if (event.shouldCommit()) {
+                event.file = session.getPath();
+                event.sessionBytes = session.length();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    public long getSaves() {
+        return saves.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+}
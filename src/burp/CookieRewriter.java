@@ -0,0 +1,46 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Replaces or inserts the Cookie header of a raw request with the command-line cookie string. Only the header block
+// is scanned and the body is copied as is, so binary POST bodies go through untouched.
+public class CookieRewriter {
+    private static final byte[] COOKIE = "cookie:".getBytes(HttpBytes.ISO_8859_1);
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final byte[] cookieLine;
+
+    // cookies is the full header line, e.g. "Cookie: a=b; c=d"
+    public CookieRewriter(final String cookies) {
+        cookieLine = cookies.getBytes(HttpBytes.ISO_8859_1);
+    }
+
+    // Returns the rewritten request, or the same array if it has no complete header block
+    public byte[] rewrite(final byte[] request) {
+        int end = HttpBytes.headersEnd(request);
+        if (end < 0) {
+            return request;
+        }
+
+        int line = HttpBytes.findHeader(request, COOKIE, end);
+        if (line >= 0) {
+            int lineEnd = HttpBytes.lineEnd(request, line, end);
+            byte[] result = new byte[request.length - (lineEnd - line) + cookieLine.length];
+            System.arraycopy(request, 0, result, 0, line);
+            System.arraycopy(cookieLine, 0, result, line, cookieLine.length);
+            System.arraycopy(request, lineEnd, result, line + cookieLine.length, request.length - lineEnd);
+            return result;
+        }
+
+        // No Cookie header, add one after the last header line
+        byte[] result = new byte[request.length + CRLF.length + cookieLine.length];
+        System.arraycopy(request, 0, result, 0, end);
+        System.arraycopy(CRLF, 0, result, end, CRLF.length);
+        System.arraycopy(cookieLine, 0, result, end + CRLF.length, cookieLine.length);
+        System.arraycopy(request, end, result, end + CRLF.length + cookieLine.length, request.length - end);
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Concurrent count table for 64-bit fingerprints. Keys live in primitive open-addressing arrays (about 12 bytes per
+// entry instead of a boxed map node) split into independently locked segments so spider threads rarely contend.
+public class FingerprintTable {
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public FingerprintTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Count one more occurrence of key and return the new count
+    public int increment(final long key) {
+        long k = key == 0 ? 1 : key; // 0 marks an empty slot
+        return segment(k).increment(k);
+    }
+
+    // Take back one occurrence of key, counts do not go below 0
+    public void decrement(final long key) {
+        long k = key == 0 ? 1 : key;
+        segment(k).decrement(k);
+    }
+
+    // Returns true the first time key is seen
+    public boolean add(final long key) {
+        return increment(key) == 1;
+    }
+
+    public int count(final long key) {
+        long k = key == 0 ? 1 : key;
+        return segment(k).count(k);
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segment(final long key) {
+        return segments[(int) (key >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        synchronized int increment(final long key) {
+            int slot = slot(keys, key);
+            if (keys[slot] == 0) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    grow();
+                    slot = slot(keys, key);
+                }
+                keys[slot] = key;
+                size++;
+            }
+            if (counts[slot] < Integer.MAX_VALUE) {
+                counts[slot]++;
+            }
+            return counts[slot];
+        }
+
+        synchronized void decrement(final long key) {
+            int slot = slot(keys, key);
+            if (keys[slot] != 0 && counts[slot] > 0) {
+                counts[slot]--;
+            }
+        }
+
+        synchronized int count(final long key) {
+            int slot = slot(keys, key);
+            return keys[slot] == 0 ? 0 : counts[slot];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        // Linear probing, returns the slot holding key or the empty slot where it belongs
+        private static int slot(final long[] keys, final long key) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
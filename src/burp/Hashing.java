@@ -0,0 +1,91 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// 64-bit fingerprints for the extension's deduplication tables. Not cryptographic, collisions are only a concern
+// at 2^32 entries.
+public final class Hashing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private Hashing() {
+    }
+
+    public static long hash64(final CharSequence text) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+
+        return mix64(hash);
+    }
+
+    public static long hash64(final byte[] data, final int from, final int to) {
+        return mix64(fnv(FNV_OFFSET, data, from, to));
+    }
+
+    // MurmurHash3 style block hash reading 8 bytes at a time, for large inputs such as response bodies where
+    // byte-at-a-time FNV is too slow
+    public static long hashBlocks(final byte[] data, final int from, final int to) {
+        long hash = FNV_OFFSET ^ (to - from);
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            hash ^= block((long) LONGS.get(data, i));
+            hash = Long.rotateLeft(hash, 27) * 5 + 0x52dce729;
+        }
+
+        long tail = 0;
+        for (int shift = 0; i < to; i++, shift += 8) {
+            tail |= (data[i] & 0xffL) << shift;
+        }
+        return mix64(hash ^ block(tail));
+    }
+
+    private static long block(final long k) {
+        return Long.rotateLeft(k * C1, 31) * C2;
+    }
+
+    // FNV-1a over a byte range, for building a hash up from several pieces before the final mix64
+    public static long fnv(long hash, final byte[] data, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (data[i] & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public static long fnv(final long hash, final int value) {
+        return (hash ^ (value & 0xff)) * FNV_PRIME;
+    }
+
+    public static long fnvStart() {
+        return FNV_OFFSET;
+    }
+
+    // Combine a running hash with another value, order dependent
+    public static long combine(final long hash, final long value) {
+        return mix64(hash * 31 + value);
+    }
+
+    // Final avalanche step of MurmurHash3
+    public static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
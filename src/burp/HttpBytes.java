@@ -0,0 +1,95 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.nio.charset.Charset;
+
+// Helpers to walk the header block of a raw HTTP message without decoding it into a String
+public final class HttpBytes {
+    public static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private HttpBytes() {
+    }
+
+    // Offset of the empty line ending the headers (the CRLF before it is not included), -1 if there is none
+    public static int headersEnd(final byte[] message) {
+        for (int i = 0; i < message.length - 1; i++) {
+            if (message[i] == '\n') {
+                if (message[i + 1] == '\n') {
+                    return i;
+                }
+                if (message[i + 1] == '\r' && i + 2 < message.length && message[i + 2] == '\n') {
+                    return i > 0 && message[i - 1] == '\r' ? i - 1 : i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    // Offset of the body, the message length if the headers are not terminated
+    public static int bodyOffset(final byte[] message, final int headersEnd) {
+        if (headersEnd < 0) {
+            return message.length;
+        }
+        return nextLine(message, nextLine(message, headersEnd));
+    }
+
+    // Offset of the CR or LF ending the line that starts at from, or limit if the line is not terminated
+    public static int lineEnd(final byte[] message, final int from, final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (message[i] == '\r' || message[i] == '\n') {
+                return i;
+            }
+        }
+
+        return limit;
+    }
+
+    // Offset of the line following the one ending at lineEnd
+    public static int nextLine(final byte[] message, final int lineEnd) {
+        int i = lineEnd;
+        if (i < message.length && message[i] == '\r') {
+            i++;
+        }
+        if (i < message.length && message[i] == '\n') {
+            i++;
+        }
+
+        return i;
+    }
+
+    // Start of the first header line named lowerName (lower case, including the colon) before end, -1 if missing
+    public static int findHeader(final byte[] message, final byte[] lowerName, final int end) {
+        int line = nextLine(message, lineEnd(message, 0, end));
+        while (line < end) {
+            if (startsWithIgnoreCase(message, line, end, lowerName)) {
+                return line;
+            }
+            line = nextLine(message, lineEnd(message, line, end));
+        }
+
+        return -1;
+    }
+
+    public static boolean startsWithIgnoreCase(final byte[] message, final int from, final int limit,
+            final byte[] lowerPrefix) {
+        if (limit - from < lowerPrefix.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerPrefix.length; i++) {
+            byte b = message[from + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerPrefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
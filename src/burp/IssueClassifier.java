@@ -0,0 +1,123 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Groups Burp issue names into the report's categories. Categories are numbered from 1 in the order they are
+// defined, and issues whose name is not listed fall into a trailing "Others" category.
+//
+// The optional issue types file lists a category name in brackets followed by the issue names it contains:
+//
+//     # comment
+//     [Injection]
+//     SQL injection
+//     OS command injection
+//
+// Each category keeps its own counter for report anchors. Numbers are taken on the issue writer thread, the counters
+// are atomic so other threads can read them.
+public class IssueClassifier {
+    private static final String OTHERS = "Others";
+
+    private static final String[] DEFAULTS = { "SQL injection", "Password field with autocomplete enabled",
+            "User agent-dependent response", "Cookie scoped to parent domain", "Cross-domain Referer leakage",
+            "Cross-domain script include", "Cookie without HttpOnly flag set", "Email addresses disclosed",
+            "Credit card numbers disclosed", "Content type incorrectly stated", "Robots.txt file" };
+
+    private final Map<String, Integer> types;
+    private final List<String> categories;
+    private final AtomicLongArray counters;
+
+    public IssueClassifier(final Map<String, Integer> types, final List<String> categories) {
+        this.types = new HashMap<String, Integer>(types);
+        List<String> names = new ArrayList<String>(categories);
+        names.add(OTHERS);
+        this.categories = Collections.unmodifiableList(names);
+        this.counters = new AtomicLongArray(names.size() + 1);
+    }
+
+    // One category per issue name, as the report has always grouped them
+    public static IssueClassifier defaults() {
+        Map<String, Integer> types = new HashMap<String, Integer>();
+        List<String> categories = new ArrayList<String>();
+        for (String name : DEFAULTS) {
+            categories.add(name);
+            types.put(name, categories.size());
+        }
+        return new IssueClassifier(types, categories);
+    }
+
+    // Load the categories from file, falling back to the defaults if it does not exist
+    public static IssueClassifier load(final File file) throws IOException {
+        if (!file.exists()) {
+            return defaults();
+        }
+
+        Map<String, Integer> types = new HashMap<String, Integer>();
+        List<String> categories = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    categories.add(line.substring(1, line.length() - 1).trim());
+                } else if (categories.isEmpty()) {
+                    throw new IOException(file + ":" + lineNumber + ": issue name before the first [category]");
+                } else {
+                    types.put(line, categories.size());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return new IssueClassifier(types, categories);
+    }
+
+    // Category number of an issue name, starting at 1
+    public int classify(final String issueName) {
+        Integer type = issueName == null ? null : types.get(issueName);
+        return type == null ? categories.size() : type;
+    }
+
+    // Number the next issue of a category, starting at 1
+    public int next(final int type) {
+        return (int) counters.incrementAndGet(type);
+    }
+
+    // Carry on numbering after count issues of a resumed run's report, before the writer starts
+    public void restore(final int type, final long count) {
+        if (type >= 0 && type < counters.length() && counters.get(type) < count) {
+            counters.set(type, count);
+        }
+    }
+
+    public long count(final int type) {
+        return counters.get(type);
+    }
+
+    // Category names in report order, "Others" last
+    public List<String> getCategories() {
+        return categories;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Folds repeated findings into one. An issue's fingerprint is its name, host, normalized path (numeric and UUID
+// segments ignored, see ShapeIndex) and the parameter Burp marked in the request, if any. Only the first issue with
+// a fingerprint reaches the report; later ones add to its count and, up to MAX_SAMPLES, its sample URLs. Findings
+// about the site rather than a page, listed in hostWide, ignore the path so they are reported once per host.
+public class IssueIndex {
+    static final int MAX_SAMPLES = 5;
+
+    public final Set<String> hostWide = new HashSet<String>(Arrays.asList("Cookie without HttpOnly flag set",
+            "SSL cookie without secure flag set", "Strict transport security not enforced",
+            "Frameable response (potential Clickjacking)", "Browser cross-site scripting filter disabled",
+            "Content type is not specified", "Cacheable HTTPS response", "SSL certificate",
+            "Unencrypted communications"));
+
+    private final IExtensionHelpers helpers;
+    private final ConcurrentMap<Long, Occurrence> occurrences = new ConcurrentHashMap<Long, Occurrence>();
+    private final AtomicInteger folded = new AtomicInteger();
+
+    public IssueIndex(final IExtensionHelpers helpers) {
+        this.helpers = helpers;
+    }
+
+    public long fingerprint(final IScanIssue issue) {
+        URL url = issue.getUrl();
+        String name = issue.getIssueName() == null ? "" : issue.getIssueName();
+        long hash = Hashing.hash64(name);
+        if (url == null) {
+            return hash;
+        }
+
+        hash = Hashing.combine(hash, Hashing.hash64(url.getHost().toLowerCase()));
+        if (!hostWide.contains(name)) {
+            byte[] path = url.getPath().getBytes(HttpBytes.ISO_8859_1);
+            hash = Hashing.combine(hash, ShapeIndex.pathHash(path, 0, path.length));
+        }
+
+        String parameter = parameter(issue);
+        return parameter == null ? hash : Hashing.combine(hash, Hashing.hash64(parameter));
+    }
+
+    // Name of the request parameter the first request marker falls in, null when there is none
+    String parameter(final IScanIssue issue) {
+        IHttpRequestResponse[] messages = issue.getHttpMessages();
+        if (messages == null || messages.length == 0 || !(messages[0] instanceof IHttpRequestResponseWithMarkers)) {
+            return null;
+        }
+
+        IHttpRequestResponseWithMarkers marked = (IHttpRequestResponseWithMarkers) messages[0];
+        List<int[]> markers = marked.getRequestMarkers();
+        byte[] request = marked.getRequest();
+        if (markers == null || markers.isEmpty() || request == null) {
+            return null;
+        }
+
+        int marker = markers.get(0)[0];
+        for (IParameter parameter : helpers.analyzeRequest(request).getParameters()) {
+            if (parameter.getValueStart() <= marker && marker <= parameter.getValueEnd()) {
+                return parameter.getType() + ":" + parameter.getName();
+            }
+        }
+        return null;
+    }
+
+    // Count an issue, returns 1 the first time its fingerprint is seen
+    public int record(final long fingerprint, final IScanIssue issue) {
+        return record(fingerprint, issue.getIssueName(), issue.getUrl());
+    }
+
+    // Also replays the issues a resumed run's journal recorded
+    public int record(final long fingerprint, final String name, final URL url) {
+        Occurrence occurrence = occurrences.get(fingerprint);
+        if (occurrence == null) {
+            Occurrence created = new Occurrence(name, url);
+            occurrence = occurrences.putIfAbsent(fingerprint, created);
+            if (occurrence == null) {
+                occurrence = created;
+            }
+        }
+
+        int count = occurrence.count.incrementAndGet();
+        if (count > 1) {
+            folded.incrementAndGet();
+            occurrence.sample(url);
+        }
+        return count;
+    }
+
+    // Whether the issue at url is the one reported for its fingerprint, compared as strings like the samples
+    public boolean isFirst(final long fingerprint, final URL url) {
+        Occurrence occurrence = occurrences.get(fingerprint);
+        return occurrence == null || (occurrence.url == null ? url == null
+                : url != null && occurrence.url.toString().equals(url.toString()));
+    }
+
+    // Fingerprints seen more than once, most repeated first
+    public List<Occurrence> duplicates() {
+        List<Occurrence> duplicates = new ArrayList<Occurrence>();
+        for (Occurrence occurrence : occurrences.values()) {
+            if (occurrence.count.get() > 1) {
+                duplicates.add(occurrence);
+            }
+        }
+        Collections.sort(duplicates, new Comparator<Occurrence>() {
+            public int compare(final Occurrence a, final Occurrence b) {
+                return Integer.compare(b.count.get(), a.count.get());
+            }
+        });
+        return duplicates;
+    }
+
+    public int size() {
+        return occurrences.size();
+    }
+
+    // Issues folded into an earlier one
+    public int getFolded() {
+        return folded.get();
+    }
+
+    public static final class Occurrence {
+        public final String name;
+        public final URL url;                                 // Where it was first reported
+        public final AtomicInteger count = new AtomicInteger();
+        private final List<String> samples = new ArrayList<String>(MAX_SAMPLES);
+
+        Occurrence(final String name, final URL url) {
+            this.name = name;
+            this.url = url;
+        }
+
+        // Compared as strings, URL.equals resolves host names
+        synchronized void sample(final URL sample) {
+            if (samples.size() < MAX_SAMPLES && sample != null) {
+                String text = sample.toString();
+                if (!(url != null && text.equals(url.toString())) && !samples.contains(text)) {
+                    samples.add(text);
+                }
+            }
+        }
+
+        // Other URLs it was reported on, at most MAX_SAMPLES
+        public synchronized List<String> getSamples() {
+            return new ArrayList<String>(samples);
+        }
+    }
+}
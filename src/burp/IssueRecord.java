@@ -0,0 +1,47 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.net.URL;
+
+// Immutable copy of an IScanIssue taken on the scanner thread, so rendering can happen later on the writer thread
+public final class IssueRecord {
+    public final String issueName;
+    public final int issueType;
+    public final String severity;
+    public final String confidence;
+    public final URL url;
+    public final String issueDetail;
+    public final String issueBackground;
+    public final String remediationBackground;
+    public final String remediationDetail;
+    public final byte[] request;
+    public final byte[] response;
+    public final long time;
+
+    public IssueRecord(final IScanIssue issue) {
+        issueName = issue.getIssueName();
+        issueType = issue.getIssueType();
+        severity = issue.getSeverity();
+        confidence = issue.getConfidence();
+        url = issue.getUrl();
+        issueDetail = issue.getIssueDetail();
+        issueBackground = issue.getIssueBackground();
+        remediationBackground = issue.getRemediationBackground();
+        remediationDetail = issue.getRemediationDetail();
+
+        IHttpRequestResponse[] messages = issue.getHttpMessages();
+        if (messages != null && messages.length > 0 && messages[0] != null) {
+            request = messages[0].getRequest();
+            response = messages[0].getResponse();
+        } else {
+            request = null;
+            response = null;
+        }
+
+        time = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.IOException;
+
+// Output format for scan issues, only ever called from the IssueWriter thread
+public interface IssueSink {
+    void write(IssueRecord issue) throws IOException;
+
+    // Called once the writer has drained everything that was queued so far
+    void flush() throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,140 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Moves issue rendering and disk I/O off Burp's scanner threads. Issues are queued in a bounded ring buffer and a
+// single writer thread hands them to every sink, flushing whenever the buffer runs dry. Producers wait for space
+// rather than drop issues when the writer falls behind. Producers hold the read side of a lock while queueing and
+// close() takes the write side to stop the writer, so an issue is either queued before the final drain or refused.
+public class IssueWriter implements Runnable {
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final RingBuffer<IssueRecord> buffer;
+    private final List<IssueSink> sinks = new CopyOnWriteArrayList<IssueSink>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile long written;
+
+    public IssueWriter(final int capacity) {
+        buffer = new RingBuffer<IssueRecord>(capacity);
+        thread = new DaemonThreadFactory("headless-issues").newThread(this);
+    }
+
+    public void addSink(final IssueSink sink) {
+        sinks.add(sink);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Called from Burp's scanner threads
+    public void submit(final IssueRecord issue) {
+        closing.readLock().lock();
+        try {
+            if (!running) {
+                System.out.println("Issue writer closed, dropping issue: " + issue.issueName + " " + issue.url);
+                return;
+            }
+            while (!buffer.offer(issue)) {
+                if (!thread.isAlive()) {
+                    System.out.println("Issue writer not running, dropping issue: " + issue.issueName + " "
+                            + issue.url);
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    public void run() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+        drain();
+    }
+
+    // Write everything queued so far and flush the sinks once at the end of the batch
+    private int drain() {
+        int count = 0;
+        IssueRecord issue;
+        while ((issue = buffer.poll()) != null) {
+            for (IssueSink sink : sinks) {
+                try {
+                    sink.write(issue);
+                } catch (Exception e) {
+                    System.out.println("Error writing issue " + issue.issueName + ": " + e.getMessage());
+                }
+            }
+            count++;
+        }
+
+        if (count > 0) {
+            written += count;
+            for (IssueSink sink : sinks) {
+                try {
+                    sink.flush();
+                } catch (Exception e) {
+                    System.out.println("Error flushing issues: " + e.getMessage());
+                }
+            }
+        }
+
+        return count;
+    }
+
+    public int pending() {
+        return buffer.size();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    // Drain what is left, then close every sink. Safe to call more than once.
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            closing.writeLock().unlock();
+        }
+
+        LockSupport.unpark(thread);
+        try {
+            if (thread.isAlive()) {
+                thread.join();
+            } else {
+                drain();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (IssueSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (Exception e) {
+                System.out.println("Error closing issue output: " + e.getMessage());
+            }
+        }
+    }
+}
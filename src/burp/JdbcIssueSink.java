@@ -0,0 +1,131 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+// Keeps issues in an embedded database so reports and comparisons between runs are queries instead of HTML scraping,
+// e.g. SELECT * FROM issues WHERE host = ? AND severity = 'High'. Any file based JDBC database works, its driver jar
+// goes next to Burp on the classpath: jdbc:sqlite:issues.db (sqlite-jdbc) or jdbc:h2:./issues (H2). Rows are batched
+// on the issue writer thread and committed once per batch.
+public class JdbcIssueSink implements IssueSink {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS issues (run_id VARCHAR(255) NOT NULL, found_at BIGINT NOT NULL, "
+                    + "host VARCHAR(255), url VARCHAR(4096), name VARCHAR(255), type INTEGER, "
+                    + "severity VARCHAR(32), confidence VARCHAR(32), detail CLOB, background CLOB, "
+                    + "remediation_background CLOB, remediation_detail CLOB)",
+            "CREATE INDEX IF NOT EXISTS issues_run_id ON issues (run_id)",
+            "CREATE INDEX IF NOT EXISTS issues_host ON issues (host)",
+            "CREATE INDEX IF NOT EXISTS issues_name ON issues (name)",
+            "CREATE INDEX IF NOT EXISTS issues_severity ON issues (severity)" };
+
+    private static final String INSERT = "INSERT INTO issues (run_id, found_at, host, url, name, type, severity, "
+            + "confidence, detail, background, remediation_background, remediation_detail) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final String runId;
+    private final Connection connection;
+    private final PreparedStatement insert;
+    private int batched;
+
+    public JdbcIssueSink(final String jdbcUrl, final String runId) throws SQLException {
+        this.runId = runId;
+        connection = DriverManager.getConnection(jdbcUrl);
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                for (String ddl : SCHEMA) {
+                    statement.executeUpdate(ddl);
+                }
+            } finally {
+                statement.close();
+            }
+            connection.setAutoCommit(false);
+            insert = connection.prepareStatement(INSERT);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void write(final IssueRecord issue) throws IOException {
+        try {
+            insert.setString(1, runId);
+            insert.setLong(2, issue.time);
+            insert.setString(3, issue.url == null ? null : issue.url.getHost().toLowerCase());
+            insert.setString(4, issue.url == null ? null : issue.url.toString());
+            insert.setString(5, issue.issueName);
+            insert.setInt(6, issue.issueType);
+            insert.setString(7, issue.severity);
+            insert.setString(8, issue.confidence);
+            text(9, issue.issueDetail);
+            text(10, issue.issueBackground);
+            text(11, issue.remediationBackground);
+            text(12, issue.remediationDetail);
+            insert.addBatch();
+            batched++;
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void text(final int index, final String value) throws SQLException {
+        if (value == null) {
+            insert.setNull(index, Types.CLOB);
+        } else {
+            insert.setString(index, value);
+        }
+    }
+
+    // One transaction for everything the writer drained in this batch
+    public void flush() throws IOException {
+        if (batched == 0) {
+            return;
+        }
+
+        try {
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw new IOException(e);
+        } finally {
+            batched = 0;
+            try {
+                insert.clearBatch();
+            } catch (SQLException e) {
+                System.out.println("Could not clear issue store batch: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                insert.close();
+                connection.close();
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Append-only record of the work a run has done, so a run that died can be resumed without redoing it. One line per
+// entry, 64-bit hashes as 16 hex digits:
+//   U <outname> <url hash>       URL written to a target's _urls.html
+//   S <shape signature>          active scan of a request shape that Burp finished
+//   I <issue fingerprint>        issue written to the report
+//   R <fold fingerprint> <issue fingerprint> <url> <name>   issue Burp reported, written or folded (see IssueIndex)
+//   C <outname> <category> <number>   number of the last issue of a category in a target's _issues.html
+//   J <run id>                   run id of the issues in the issue store, the last one counts
+// A torn last line from a crash is ignored when the journal is read back. Lines are appended from Burp's threads,
+// the monitor and the issue writer, and flushed with each issue batch and monitor poll.
+public class Journal implements IssueSink {
+    private final File file;
+    private BufferedWriter out;
+
+    // Read back by load()
+    public final Map<String, List<Long>> urls = new HashMap<String, List<Long>>();
+    public final List<Long> shapes = new ArrayList<Long>();
+    public final FingerprintTable issues = new FingerprintTable();
+    public final FingerprintTable recorded = new FingerprintTable(); // Issue fingerprints of the R entries
+    public final List<Record> records = new ArrayList<Record>();
+    public final Map<String, Map<Integer, Integer>> numbers = new HashMap<String, Map<Integer, Integer>>();
+    public String runId;
+    private long entries;
+
+    public Journal(final File file) {
+        this.file = file;
+    }
+
+    // Fingerprint of an issue, the same issue reported again for the same URL has the same one
+    public static long issueFingerprint(final String name, final URL url) {
+        return Hashing.combine(Hashing.hash64(name == null ? "" : name),
+                Hashing.hash64(url == null ? "" : url.toString()));
+    }
+
+    // Read the entries of an earlier run, a missing journal is an empty one
+    public void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", line.startsWith("R ") ? 5 : (line.startsWith("J ") ? 2 : -1));
+                try {
+                    if ("U".equals(fields[0]) && fields.length == 3) {
+                        List<Long> hashes = urls.get(fields[1]);
+                        if (hashes == null) {
+                            hashes = new ArrayList<Long>();
+                            urls.put(fields[1], hashes);
+                        }
+                        hashes.add(parse(fields[2]));
+                    } else if ("S".equals(fields[0]) && fields.length == 2) {
+                        shapes.add(parse(fields[1]));
+                    } else if ("I".equals(fields[0]) && fields.length == 2) {
+                        issues.add(parse(fields[1]));
+                    } else if ("C".equals(fields[0]) && fields.length == 4) {
+                        Map<Integer, Integer> categories = numbers.get(fields[1]);
+                        if (categories == null) {
+                            categories = new HashMap<Integer, Integer>();
+                            numbers.put(fields[1], categories);
+                        }
+                        categories.put(Integer.valueOf(fields[2]), Integer.valueOf(fields[3]));
+                    } else if ("J".equals(fields[0]) && fields.length == 2) {
+                        runId = fields[1];
+                    } else if ("R".equals(fields[0]) && fields.length == 5) {
+                        long issue = parse(fields[2]);
+                        URL url = "-".equals(fields[3]) ? null : new URL(fields[3]);
+                        records.add(new Record(parse(fields[1]), fields[4], url));
+                        recorded.add(issue);
+                    } else {
+                        continue;
+                    }
+                    entries++;
+                } catch (NumberFormatException e) {
+                    // Torn line
+                } catch (MalformedURLException e) {
+                    // Torn line
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static long parse(final String hex) {
+        if (hex.length() != 16) {
+            throw new NumberFormatException("Torn hash " + hex);
+        }
+        return Long.parseUnsignedLong(hex, 16);
+    }
+
+    private static String hex(final long hash) {
+        String hex = Long.toHexString(hash);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    // Keep the loaded entries when resuming, start a new journal otherwise
+    public void open(final boolean resume) throws IOException {
+        boolean torn = false;
+        if (resume && file.length() > 0) {
+            RandomAccessFile last = new RandomAccessFile(file, "r");
+            try {
+                last.seek(file.length() - 1);
+                torn = last.read() != '\n';
+            } finally {
+                last.close();
+            }
+        }
+
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, resume),
+                StandardCharsets.US_ASCII));
+        if (torn) {
+            // Finish the torn line so it does not swallow the first new entry
+            out.write('\n');
+        }
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public void url(final String outname, final long hash) {
+        append("U " + outname + " " + hex(hash));
+    }
+
+    public void shape(final long signature) {
+        append("S " + hex(signature));
+    }
+
+    // Called when the issue store is opened with a run id the journal does not hold yet
+    public void run(final String id) {
+        runId = id;
+        append("J " + id);
+    }
+
+    // Called by the HTML report after numbering an issue
+    public void numbered(final String outname, final int category, final int number) {
+        append("C " + outname + " " + category + " " + number);
+    }
+
+    // Called for every issue Burp reports, before it is folded or written
+    public void record(final long fingerprint, final String name, final URL url) {
+        append("R " + hex(fingerprint) + " " + hex(issueFingerprint(name, url)) + " "
+                + (url == null ? "-" : url.toString().replace(" ", "%20")) + " " + (name == null ? "" : name));
+    }
+
+    // Called by the issue writer once the issue is in the report
+    public void write(final IssueRecord issue) {
+        append("I " + hex(issueFingerprint(issue.issueName, issue.url)));
+    }
+
+    private synchronized void append(final String line) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.write(line);
+            out.write('\n');
+        } catch (IOException e) {
+            System.out.println("Could not append to journal '" + file + "': " + e.getMessage());
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // An R entry read back, replayed into the IssueIndex of a resumed run
+    public static final class Record {
+        public final long fingerprint;
+        public final String name;
+        public final URL url;
+
+        Record(final long fingerprint, final String name, final URL url) {
+            this.fingerprint = fingerprint;
+            this.name = name;
+            this.url = url;
+        }
+    }
+}
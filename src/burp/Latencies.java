@@ -0,0 +1,120 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histograms for the extender callbacks and for the target's own response times, to tell whether a slow
+// scan is the extension's doing or the target's. processHttpMessage is split by tool and by request and response,
+// the others are single histograms.
+public class Latencies {
+    private static final int IN_FLIGHT = 65536;               // Slots for spider requests waiting for a response
+    private static final int TAG_SHIFT = 40;                  // Sent slots: key tag above, send time below
+    private static final long TIME_MASK = (1L << TAG_SHIFT) - 1;
+
+    public final LatencyHistogram newScanIssue = new LatencyHistogram();
+    public final LatencyHistogram appendCookies = new LatencyHistogram();
+    public final LatencyHistogram spiderToScanner = new LatencyHistogram();
+    public final LatencyHistogram targetResponse = new LatencyHistogram();
+    private final ConcurrentMap<String, LatencyHistogram> requests = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final ConcurrentMap<String, LatencyHistogram> responses = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    // Send times by service, request line and request length, the response callback carries the request as it was
+    // sent. Direct-mapped and lock-free: a key's low bits pick the slot, which packs the key's top 24 bits with the
+    // send time in microseconds since start (40 bits, about 12 days). A request whose response never comes stays
+    // until another one maps to its slot.
+    private final AtomicLongArray sent = new AtomicLongArray(IN_FLIGHT);
+    private final long origin = System.nanoTime() - 1000;     // Keeps a packed slot from ever being 0, the empty slot
+
+    // processHttpMessage histogram for the tool and direction
+    public LatencyHistogram processHttpMessage(final String toolName, final boolean messageIsRequest) {
+        ConcurrentMap<String, LatencyHistogram> byTool = messageIsRequest ? requests : responses;
+        LatencyHistogram histogram = byTool.get(toolName);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = byTool.putIfAbsent(toolName, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // Called as the request leaves for the target
+    public void requestSent(final IHttpRequestResponse message, final long nanos) {
+        long key = key(message);
+        if (key == 0) {
+            return;
+        }
+        int slot = (int) key & (IN_FLIGHT - 1);
+        long tag = key >>> TAG_SHIFT;
+
+        // The same request already in flight keeps its earlier time, the first response pairs with it
+        if (sent.get(slot) >>> TAG_SHIFT != tag) {
+            sent.set(slot, tag << TAG_SHIFT | (((nanos - origin) / 1000) & TIME_MASK));
+        }
+    }
+
+    // Called as the response comes back, unmatched responses are ignored
+    public void responseReceived(final IHttpRequestResponse message, final long nanos) {
+        long key = key(message);
+        if (key == 0) {
+            return;
+        }
+        int slot = (int) key & (IN_FLIGHT - 1);
+        long packed = sent.get(slot);
+        if (packed != 0 && packed >>> TAG_SHIFT == key >>> TAG_SHIFT && sent.compareAndSet(slot, packed, 0)) {
+            targetResponse.record(nanos - origin - (packed & TIME_MASK) * 1000);
+        }
+    }
+
+    // Service, request line and request length: cheap to hash on every callback, and distinct enough to pair a
+    // response with its request among those in flight. 0 when the message has no request.
+    private static long key(final IHttpRequestResponse message) {
+        byte[] request = message.getRequest();
+        IHttpService service = message.getHttpService();
+        if (request == null || service == null) {
+            return 0;
+        }
+        long hash = Hashing.combine(Hashing.hash64(String.valueOf(service.getHost())),
+                service.getPort() * 2 + ("https".equals(service.getProtocol()) ? 1 : 0));
+        hash = Hashing.combine(hash, Hashing.hash64(request, 0, HttpBytes.lineEnd(request, 0, request.length)));
+        hash = Hashing.combine(hash, request.length);
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Histograms by name, in a stable order for reports
+    public Map<String, LatencyHistogram> all() {
+        Map<String, LatencyHistogram> all = new TreeMap<String, LatencyHistogram>();
+        for (Map.Entry<String, LatencyHistogram> entry : requests.entrySet()) {
+            all.put("processHttpMessage " + entry.getKey() + " request", entry.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : responses.entrySet()) {
+            all.put("processHttpMessage " + entry.getKey() + " response", entry.getValue());
+        }
+        all.put("newScanIssue", newScanIssue);
+        all.put("appendCookies", appendCookies);
+        all.put("spiderToScanner", spiderToScanner);
+        all.put("target response", targetResponse);
+        return all;
+    }
+
+    // One line per histogram that has recorded something
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : all().entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                report.append("latency ").append(entry.getKey()).append(": ").append(entry.getValue().summary())
+                        .append('\n');
+            }
+        }
+        return report.toString();
+    }
+}
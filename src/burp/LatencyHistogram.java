@@ -0,0 +1,113 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Nanosecond latencies counted in log-linear buckets, the way HdrHistogram does it with one significant digit: each
+// power of two is split in 16 buckets, so any recorded value is reported within 1/16 (about 6%) of its true value.
+// Recording is one array increment and never allocates or locks, so it can sit on Burp's callback threads.
+public class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BITS = 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(final long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BITS)) - SUB_BUCKETS;
+        return (msb - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Highest value that falls in the bucket
+    static long highest(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int msb = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = SUB_BUCKETS + index % SUB_BUCKETS;
+        return ((sub + 1) << (msb - SUB_BITS)) - 1;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Value at the given percentile (0-100), 0 when nothing was recorded
+    public long percentile(final double percentile) {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return percentile(snapshot, total, percentile);
+    }
+
+    private long percentile(final long[] snapshot, final long total, final double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // count=N p50=... p90=... p99=... p99.9=... max=...
+    public String summary() {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        return "count=" + total + " p50=" + format(percentile(snapshot, total, 50)) + " p90="
+                + format(percentile(snapshot, total, 90)) + " p99=" + format(percentile(snapshot, total, 99))
+                + " p99.9=" + format(percentile(snapshot, total, 99.9)) + " max=" + format(max.get());
+    }
+
+    static String format(final long nanos) {
+        if (nanos < 1000L) {
+            return nanos + "ns";
+        } else if (nanos < 1000000L) {
+            return String.format("%.1fus", nanos / 1000.0);
+        } else if (nanos < 1000000000L) {
+            return String.format("%.1fms", nanos / 1000000.0);
+        }
+        return String.format("%.2fs", nanos / 1000000000.0);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+// Live counters and gauges for a running scan. The extension's threads bump the counters, gauges are read from the
+// spider, passive, active scan and issue writer components when scraped. Served in Prometheus text format on
+// http://127.0.0.1:PORT/metrics, and always registered as a JMX MBean for when no port is given or it is taken.
+public class Metrics implements MetricsMBean {
+    private static final String[] SEVERITIES = { "High", "Medium", "Low", "Information" };
+
+    public final LongAdder spiderRequests = new LongAdder();
+    public final LongAdder spiderResponses = new LongAdder();
+    public final LongAdder reportCharacters = new LongAdder(); // HTML report and URL list characters written
+    private final Map<String, LongAdder> issues = new ConcurrentHashMap<String, LongAdder>();
+    private final BurpExtender extender;
+    private HttpServer server;
+    private ObjectName name;
+
+    public Metrics(final BurpExtender extender) {
+        this.extender = extender;
+        for (String severity : SEVERITIES) {
+            issues.put(severity, new LongAdder());
+        }
+    }
+
+    // Called on Burp's scanner threads. Issues without a severity are counted as information, ConcurrentHashMap takes
+    // no null keys.
+    public void issue(final String severity) {
+        String key = severity == null ? "Information" : severity;
+        LongAdder count = issues.get(key);
+        if (count == null) {
+            LongAdder created = new LongAdder();
+            count = issues.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.increment();
+    }
+
+    // Registers the MBean, and serves /metrics on the loopback interface when port is above 0
+    public void start(final int port) {
+        try {
+            name = new ObjectName("burp:type=HeadlessScanner");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (Exception e) {
+            System.out.println("Could not register metrics MBean: " + e.getMessage());
+            name = null;
+        }
+
+        if (port <= 0) {
+            return;
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", new HttpHandler() {
+                public void handle(final HttpExchange exchange) {
+                    try {
+                        byte[] body = getPrometheusText().getBytes(StandardCharsets.UTF_8);
+                        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                        exchange.sendResponseHeaders(200, body.length);
+                        OutputStream out = exchange.getResponseBody();
+                        out.write(body);
+                        out.close();
+                    } catch (Exception e) {
+                        System.out.println("Could not serve metrics: " + e.getMessage());
+                    } finally {
+                        exchange.close();
+                    }
+                }
+            });
+            server.setExecutor(null);
+            server.start();
+        } catch (Exception e) {
+            System.out.println("Could not serve metrics on 127.0.0.1:" + port + ", JMX only: " + e.getMessage());
+            server = null;
+        }
+    }
+
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                System.out.println("Could not unregister metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    public long getSpiderRequests() {
+        return spiderRequests.sum();
+    }
+
+    public long getSpiderResponses() {
+        return spiderResponses.sum();
+    }
+
+    public long getPassiveSubmitted() {
+        return extender.passive == null ? 0 : extender.passive.getSubmitted();
+    }
+
+    public long getPassiveFiltered() {
+        return extender.passive == null ? 0 : extender.passive.getFiltered();
+    }
+
+    public long getPassiveDuplicates() {
+        return extender.passive == null ? 0 : extender.passive.getDuplicates();
+    }
+
+    public long getPassiveDuplicateBytes() {
+        return extender.passive == null ? 0 : extender.passive.getDuplicateBytes();
+    }
+
+    public int getPassiveQueued() {
+        return extender.passive == null ? 0 : extender.passive.queued();
+    }
+
+    public int getActiveQueued() {
+        return extender.scheduler == null ? 0 : extender.scheduler.queued();
+    }
+
+    public int getActiveInFlight() {
+        return extender.scanqueue.size();
+    }
+
+    public long getActiveFinished() {
+        return extender.scanqueue.getFinished();
+    }
+
+    public long getIssuesHigh() {
+        return issues.get("High").sum();
+    }
+
+    public long getIssuesMedium() {
+        return issues.get("Medium").sum();
+    }
+
+    public long getIssuesLow() {
+        return issues.get("Low").sum();
+    }
+
+    public long getIssuesInformation() {
+        return issues.get("Information").sum();
+    }
+
+    public long getIssuesWritten() {
+        return extender.issueWriter.getWritten();
+    }
+
+    public long getReportCharacters() {
+        return reportCharacters.sum();
+    }
+
+    // Prometheus text exposition format 0.0.4, rates are left to the scraper
+    public String getPrometheusText() {
+        StringBuilder text = new StringBuilder(2048);
+        counter(text, "headless_spider_requests_total", "Spider requests seen", getSpiderRequests());
+        counter(text, "headless_spider_responses_total", "Spider responses seen", getSpiderResponses());
+        counter(text, "headless_passive_submitted_total", "Responses submitted for passive scanning",
+                getPassiveSubmitted());
+        counter(text, "headless_passive_filtered_total", "Responses not passively scanned", getPassiveFiltered());
+        counter(text, "headless_passive_duplicates_total", "Responses not passively scanned, body already scanned",
+                getPassiveDuplicates());
+        counter(text, "headless_passive_duplicate_bytes_total", "Body bytes not passively scanned again",
+                getPassiveDuplicateBytes());
+        gauge(text, "headless_passive_queued", "Responses waiting for passive scanning", getPassiveQueued());
+        gauge(text, "headless_active_queued", "Active scan candidates waiting for a slot", getActiveQueued());
+        gauge(text, "headless_active_in_flight", "Active scan items running in Burp", getActiveInFlight());
+        counter(text, "headless_active_finished_total", "Active scan items finished", getActiveFinished());
+
+        text.append("# HELP headless_issues_total Scan issues reported by Burp\n");
+        text.append("# TYPE headless_issues_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : issues.entrySet()) {
+            text.append("headless_issues_total{severity=\"").append(label(entry.getKey())).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+
+        counter(text, "headless_issues_written_total", "Scan issues written to the report", getIssuesWritten());
+        counter(text, "headless_report_characters_total", "HTML report and URL list characters written",
+                getReportCharacters());
+        return text.toString();
+    }
+
+    private static void counter(final StringBuilder text, final String name, final String help, final long value) {
+        metric(text, name, help, "counter", value);
+    }
+
+    private static void gauge(final StringBuilder text, final String name, final String help, final long value) {
+        metric(text, name, help, "gauge", value);
+    }
+
+    private static void metric(final StringBuilder text, final String name, final String help, final String type,
+            final long value) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String label(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
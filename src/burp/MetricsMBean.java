@@ -0,0 +1,43 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// JMX view of the scan metrics, registered as burp:type=HeadlessScanner
+public interface MetricsMBean {
+    long getSpiderRequests();
+
+    long getSpiderResponses();
+
+    long getPassiveSubmitted();
+
+    long getPassiveFiltered();
+
+    long getPassiveDuplicates();
+
+    long getPassiveDuplicateBytes();
+
+    int getPassiveQueued();
+
+    int getActiveQueued();
+
+    int getActiveInFlight();
+
+    long getActiveFinished();
+
+    long getIssuesHigh();
+
+    long getIssuesMedium();
+
+    long getIssuesLow();
+
+    long getIssuesInformation();
+
+    long getIssuesWritten();
+
+    long getReportCharacters();
+
+    String getPrometheusText();
+}
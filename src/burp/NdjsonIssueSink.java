@@ -0,0 +1,158 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Writes each issue as one JSON object per line, for tools that load results while the scan is still running. The
+// line is encoded straight into a reusable UTF-8 byte buffer, strings are escaped as they are copied, and the
+// request and response are optionally included as base64. Lines reach the file when the issue writer flushes a batch.
+public class NdjsonIssueSink implements IssueSink {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(HttpBytes.ISO_8859_1);
+
+    private final OutputStream out;
+    private final boolean messages;
+    private final Base64.Encoder base64 = Base64.getEncoder();
+    private byte[] line = new byte[8192];
+    private byte[] encoded = new byte[8192];
+    private int length;
+
+    public NdjsonIssueSink(final File file, final boolean append, final boolean messages) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file, append), 65536);
+        this.messages = messages;
+    }
+
+    public void write(final IssueRecord issue) throws IOException {
+        length = 0;
+        raw("{\"time\":");
+        raw(Long.toString(issue.time));
+        field("host", issue.url == null ? null : issue.url.getHost());
+        field("url", issue.url == null ? null : issue.url.toString());
+        field("name", issue.issueName);
+        raw(",\"type\":");
+        raw(Integer.toString(issue.issueType));
+        field("severity", issue.severity);
+        field("confidence", issue.confidence);
+        field("detail", issue.issueDetail);
+        field("background", issue.issueBackground);
+        field("remediationBackground", issue.remediationBackground);
+        field("remediationDetail", issue.remediationDetail);
+        if (messages) {
+            bytes("request", issue.request);
+            bytes("response", issue.response);
+        }
+        raw("}\n");
+        out.write(line, 0, length);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void field(final String name, final String value) {
+        raw(",\"");
+        raw(name);
+        raw("\":");
+        if (value == null) {
+            raw("null");
+            return;
+        }
+
+        ensure(value.length() * 6 + 2);
+        line[length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line[length++] = '\\';
+                line[length++] = (byte) c;
+            } else if (c == '\n') {
+                line[length++] = '\\';
+                line[length++] = 'n';
+            } else if (c == '\r') {
+                line[length++] = '\\';
+                line[length++] = 'r';
+            } else if (c == '\t') {
+                line[length++] = '\\';
+                line[length++] = 't';
+            } else if (c < 0x20 || Character.isSurrogate(c) && !isPair(value, i)) {
+                // Control characters, and surrogate halves that cannot be encoded as UTF-8
+                line[length++] = '\\';
+                line[length++] = 'u';
+                line[length++] = HEX[(c >> 12) & 0xf];
+                line[length++] = HEX[(c >> 8) & 0xf];
+                line[length++] = HEX[(c >> 4) & 0xf];
+                line[length++] = HEX[c & 0xf];
+            } else if (c < 0x80) {
+                line[length++] = (byte) c;
+            } else if (c < 0x800) {
+                line[length++] = (byte) (0xc0 | (c >> 6));
+                line[length++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c)) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                line[length++] = (byte) (0xf0 | (codePoint >> 18));
+                line[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                line[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                line[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                line[length++] = (byte) (0xe0 | (c >> 12));
+                line[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                line[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        line[length++] = '"';
+    }
+
+    private static boolean isPair(final String value, final int i) {
+        return Character.isHighSurrogate(value.charAt(i)) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1));
+    }
+
+    private void bytes(final String name, final byte[] value) {
+        raw(",\"");
+        raw(name);
+        raw("\":");
+        if (value == null) {
+            raw("null");
+            return;
+        }
+
+        int size = (value.length + 2) / 3 * 4;
+        if (encoded.length < size) {
+            encoded = new byte[Math.max(encoded.length * 2, size)];
+        }
+        base64.encode(value, encoded);
+
+        ensure(size + 2);
+        line[length++] = '"';
+        System.arraycopy(encoded, 0, line, length, size);
+        length += size;
+        line[length++] = '"';
+    }
+
+    // ASCII only: names, numbers and punctuation
+    private void raw(final String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            line[length++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void ensure(final int more) {
+        if (length + more > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, length + more));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Groups a target's spidered pages that only differ in details (timestamps, CSRF tokens, ids) so the active scanner
+// sees a few pages per server-side handler instead of all of them. A page's fingerprint is a 64-bit SimHash of
+// consecutive word pairs in its body, words with digits left out. Pages whose fingerprints differ in at most
+// DISTANCE bits are near-duplicates: split into BANDS 16-bit bands, two such fingerprints share at least one band,
+// so candidates are found by exact band lookups and only those are compared bit by bit.
+public class PageClusters {
+    static final int DISTANCE = 3;
+    static final int BANDS = 4;
+    static final int MAX_CLUSTERS = 65536;
+
+    private final int maxPerCluster;
+    private final Map<Long, List<Cluster>> bands = new HashMap<Long, List<Cluster>>();
+    private final List<Cluster> clusters = new ArrayList<Cluster>();
+    private long pages;
+    private long skipped;
+
+    // maxPerCluster pages of a cluster are actively scanned, 0 scans all of them
+    public PageClusters(final int maxPerCluster) {
+        this.maxPerCluster = maxPerCluster;
+    }
+
+    // Cluster of a response, a new one when no earlier page is close enough. Null for bodies without words and once
+    // MAX_CLUSTERS are known.
+    public Cluster assign(final byte[] response, final String url) {
+        if (response == null) {
+            return null;
+        }
+        long simhash = simhash(response, HttpBytes.bodyOffset(response, HttpBytes.headersEnd(response)),
+                response.length);
+        if (simhash == 0) {
+            return null;
+        }
+
+        synchronized (this) {
+            pages++;
+            for (int band = 0; band < BANDS; band++) {
+                List<Cluster> candidates = bands.get(band(simhash, band));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Cluster cluster : candidates) {
+                    if (Long.bitCount(cluster.simhash ^ simhash) <= DISTANCE) {
+                        cluster.pages++;
+                        return cluster;
+                    }
+                }
+            }
+
+            if (clusters.size() >= MAX_CLUSTERS) {
+                return null;
+            }
+            Cluster cluster = new Cluster(clusters.size() + 1, simhash, url);
+            clusters.add(cluster);
+            for (int band = 0; band < BANDS; band++) {
+                Long key = band(simhash, band);
+                List<Cluster> members = bands.get(key);
+                if (members == null) {
+                    members = new ArrayList<Cluster>(1);
+                    bands.put(key, members);
+                }
+                members.add(cluster);
+            }
+            return cluster;
+        }
+    }
+
+    // Returns true while fewer than maxPerCluster pages of the cluster went to the active scanner. The first request
+    // of a shape never scanned is always admitted: pages of different handlers that share a layout can land in one
+    // cluster, and the cap must not cost a handler its only scan.
+    public synchronized boolean admit(final Cluster cluster, final boolean firstOfShape) {
+        if (cluster == null || firstOfShape || maxPerCluster <= 0 || cluster.scanned < maxPerCluster) {
+            if (cluster != null) {
+                cluster.scanned++;
+            }
+            return true;
+        }
+        skipped++;
+        return false;
+    }
+
+    // Clusters of more than one page, largest first
+    public synchronized List<Cluster> repeated() {
+        List<Cluster> repeated = new ArrayList<Cluster>();
+        for (Cluster cluster : clusters) {
+            if (cluster.pages > 1) {
+                repeated.add(cluster);
+            }
+        }
+        Collections.sort(repeated, new Comparator<Cluster>() {
+            public int compare(final Cluster a, final Cluster b) {
+                return Integer.compare(b.pages, a.pages);
+            }
+        });
+        return repeated;
+    }
+
+    public synchronized int getClusters() {
+        return clusters.size();
+    }
+
+    // Pages fingerprinted
+    public synchronized long getPages() {
+        return pages;
+    }
+
+    // Pages not actively scanned because their cluster had maxPerCluster representatives
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    private static Long band(final long simhash, final int band) {
+        return Long.valueOf(((simhash >>> (band * 16)) & 0xffff) | ((long) band << 16));
+    }
+
+    // SimHash of the word pairs in data[from, to), 0 when it has none. Words are ASCII letters and underscores, so
+    // markup names count as words and the page template weighs in as much as its text.
+    static long simhash(final byte[] data, final int from, final int to) {
+        int[] weights = new int[64];
+        long previous = 0;
+        long word = Hashing.fnvStart();
+        boolean inWord = false;
+        boolean digits = false;
+        int features = 0;
+
+        for (int i = from; i <= to; i++) {
+            int b = i < to ? data[i] : ' ';
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b >= 'a' && b <= 'z' || b == '_') {
+                word = Hashing.fnv(word, (byte) b);
+                inWord = true;
+            } else if (b >= '0' && b <= '9') {
+                digits = true;
+                inWord = true;
+            } else if (inWord) {
+                if (!digits) {
+                    long current = Hashing.mix64(word);
+                    long feature = Hashing.combine(previous, current);
+                    for (int bit = 0; bit < 64; bit++) {
+                        weights[bit] += (int) ((feature >>> bit) & 1) * 2 - 1;
+                    }
+                    features++;
+                    previous = current;
+                }
+                word = Hashing.fnvStart();
+                inWord = false;
+                digits = false;
+            }
+        }
+        if (features == 0) {
+            return 0;
+        }
+
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simhash |= 1L << bit;
+            }
+        }
+        return simhash == 0 ? 1 : simhash;
+    }
+
+    public static final class Cluster {
+        public final int id;
+        public final long simhash;
+        public final String url;                              // First page seen, the first representative
+        volatile int pages = 1;                               // Written under the PageClusters lock
+        volatile int scanned;
+
+        Cluster(final int id, final long simhash, final String url) {
+            this.id = id;
+            this.simhash = simhash;
+            this.url = url;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        // Pages handed to the active scanner
+        public int getScanned() {
+            return scanned;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands spider responses to doPassiveScan from a small pool of worker threads instead of the spider's listener
+// thread. Each worker takes whatever is queued, up to batchSize messages, and submits them back to back. Responses
+// that cannot produce findings (images, fonts, media, archives, very large bodies) are filtered out before they are
+// queued, and so are bodies byte-identical to one already submitted maxDuplicates times. When the queue is full the
+// spider thread waits, so memory stays bounded.
+public class PassiveDispatcher {
+    private static final byte[] CONTENT_TYPE = "content-type:".getBytes(HttpBytes.ISO_8859_1);
+
+    private final IBurpExtenderCallbacks callbacks;
+    private final BlockingQueue<Job> queue;
+    private final int batchSize;
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private final AtomicLong pending = new AtomicLong();      // Dispatched and not submitted yet
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong filtered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final BodyHashCache bodies = new BodyHashCache(65536);
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong duplicateBytes = new AtomicLong();
+    private volatile boolean running = true;
+
+    private byte[][] skipTypes;
+    private String[] skipExtensions;
+    private int maxBodyBytes = 2 * 1024 * 1024;
+    private int maxDuplicates = 3;
+
+    public PassiveDispatcher(final IBurpExtenderCallbacks callbacks, final int threads, final int capacity,
+            final int batchSize) {
+        this.callbacks = callbacks;
+        this.queue = new ArrayBlockingQueue<Job>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        setSkipTypes(new String[] { "image/", "font/", "audio/", "video/", "application/font", "application/x-font",
+                "application/octet-stream", "application/zip", "application/x-gzip", "application/pdf" });
+        setSkipExtensions(new String[] { ".png", ".jpg", ".jpeg", ".gif", ".ico", ".bmp", ".webp", ".svgz",
+                ".woff", ".woff2", ".ttf", ".otf", ".eot", ".mp3", ".mp4", ".avi", ".mov", ".zip", ".gz", ".tgz",
+                ".exe", ".pdf" });
+
+        DaemonThreadFactory factory = new DaemonThreadFactory("headless-passive");
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            workers.add(factory.newThread(new Runnable() {
+                public void run() {
+                    work();
+                }
+            }));
+        }
+    }
+
+    // Response Content-Type prefixes that are never passively scanned, case insensitive
+    public void setSkipTypes(final String[] types) {
+        byte[][] prefixes = new byte[types.length][];
+        for (int i = 0; i < types.length; i++) {
+            prefixes[i] = types[i].trim().toLowerCase(Locale.ENGLISH).getBytes(HttpBytes.ISO_8859_1);
+        }
+        skipTypes = prefixes;
+    }
+
+    // Path extensions that are never passively scanned, with or without the leading dot
+    public void setSkipExtensions(final String[] extensions) {
+        String[] suffixes = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++) {
+            String extension = extensions[i].trim().toLowerCase(Locale.ENGLISH);
+            suffixes[i] = extension.startsWith(".") ? extension : "." + extension;
+        }
+        skipExtensions = suffixes;
+    }
+
+    // Responses with a larger body are never passively scanned
+    public void setMaxBodyBytes(final int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    // Identical bodies passively scanned before the rest are skipped, 0 scans every one
+    public void setMaxDuplicates(final int maxDuplicates) {
+        this.maxDuplicates = maxDuplicates;
+    }
+
+    public void start() {
+        for (Thread worker : workers) {
+            worker.start();
+        }
+    }
+
+    // Called on the spider's listener thread, returns false if the response was filtered out
+    public boolean dispatch(final String host, final int port, final boolean useHttps, final byte[] request,
+            final byte[] response, final String path) throws InterruptedException {
+        if (response == null) {
+            filtered.incrementAndGet();
+            return false;
+        }
+        int end = HttpBytes.headersEnd(response);
+        if (isFiltered(response, end, path)) {
+            filtered.incrementAndGet();
+            return false;
+        }
+
+        if (maxDuplicates > 0) {
+            int body = HttpBytes.bodyOffset(response, end);
+            if (bodies.increment(Hashing.hashBlocks(response, body, response.length)) > maxDuplicates) {
+                duplicates.incrementAndGet();
+                duplicateBytes.addAndGet(response.length - body);
+                return false;
+            }
+        }
+
+        pending.incrementAndGet();
+        try {
+            queue.put(new Job(host, port, useHttps, request, response));
+        } catch (InterruptedException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+        return true;
+    }
+
+    boolean isFiltered(final byte[] response, final int end, final String path) {
+        if (end >= 0 && response.length - end > maxBodyBytes) {
+            return true;
+        }
+
+        String lowerPath = path == null ? "" : path.toLowerCase(Locale.ENGLISH);
+        for (String extension : skipExtensions) {
+            if (lowerPath.endsWith(extension)) {
+                return true;
+            }
+        }
+
+        int header = end < 0 ? -1 : HttpBytes.findHeader(response, CONTENT_TYPE, end);
+        if (header >= 0) {
+            int from = header + CONTENT_TYPE.length;
+            int to = HttpBytes.lineEnd(response, from, end);
+            while (from < to && response[from] == ' ') {
+                from++;
+            }
+            for (byte[] type : skipTypes) {
+                if (HttpBytes.startsWithIgnoreCase(response, from, to, type)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void work() {
+        List<Job> batch = new ArrayList<Job>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Job first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Job job : batch) {
+                    try {
+                        callbacks.doPassiveScan(job.host, job.port, job.useHttps, job.request, job.response);
+                        submitted.incrementAndGet();
+                    } catch (Exception e) {
+                        System.out.println("Error in passive scan submission: " + e.getMessage());
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+                batches.incrementAndGet();
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Nothing queued and no batch being submitted
+    public boolean isIdle() {
+        return pending.get() == 0;
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getFiltered() {
+        return filtered.get();
+    }
+
+    // Responses skipped because their body was already scanned maxDuplicates times
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getDuplicateBytes() {
+        return duplicateBytes.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    // Submit what is still queued, then stop the workers
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                if (worker.isAlive()) {
+                    worker.join(TimeUnit.SECONDS.toMillis(30));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    static final class Job {
+        final String host;
+        final int port;
+        final boolean useHttps;
+        final byte[] request;
+        final byte[] response;
+
+        Job(final String host, final int port, final boolean useHttps, final byte[] request, final byte[] response) {
+            this.host = host;
+            this.port = port;
+            this.useHttps = useHttps;
+            this.request = request;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Java Flight Recorder events for each stage of the extension, so a recording of a scan shows them next to GC, I/O
+// and Burp's own threads. They cost next to nothing unless a recording enables them, e.g.
+// java -XX:StartFlightRecording=filename=scan.jfr,settings=profile ... burp.StartBurp
+public final class PipelineEvents {
+    private PipelineEvents() {
+    }
+
+    @Name("burp.headless.CookieRewrite")
+    @Label("Cookie Rewrite")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("Command line cookies set on a spider request")
+    public static class CookieRewrite extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Host")
+        public String host;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Rewritten Size")
+        @DataAmount
+        public long rewrittenBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.UrlResolution")
+    @Label("URL Resolution")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("URL of a spider response rebuilt from its request line and Host header")
+    public static class UrlResolution extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Host")
+        public String host;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.PassiveDispatch")
+    @Label("Passive Dispatch")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("Spider response filtered or queued for passive scanning, including time blocked on a full queue")
+    public static class PassiveDispatch extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Host")
+        public String host;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Response Size")
+        @DataAmount
+        public long responseBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.ActiveScanAdmission")
+    @Label("Active Scan Admission")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("Spider request checked for scope, parameters and shape before queueing for the active scanner")
+    public static class ActiveScanAdmission extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Host")
+        public String host;
+
+        @Label("Request Size")
+        @DataAmount
+        public long requestBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.IssueWrite")
+    @Label("Issue Write")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("Scan issue rendered and written to its target's report by the issue writer thread")
+    public static class IssueWrite extends Event {
+        @Label("URL")
+        public String url;
+
+        @Label("Host")
+        public String host;
+
+        @Label("Issue")
+        public String issue;
+
+        @Label("Written Size")
+        @DataAmount
+        public long writtenBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.CheckpointSave")
+    @Label("Checkpoint Save")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("Burp session saved and renamed over the previous checkpoint")
+    public static class CheckpointSave extends Event {
+        @Label("File")
+        public String file;
+
+        @Label("Session Size")
+        @DataAmount
+        public long sessionBytes;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+
+    @Name("burp.headless.MonitorPoll")
+    @Label("Monitor Poll")
+    @Category({ "Burp", "Headless Scanner" })
+    @Description("One pass of the monitor over the spiders and the scan queue")
+    public static class MonitorPoll extends Event {
+        @Label("Active Scans In Flight")
+        public int inFlight;
+
+        @Label("Active Scans Queued")
+        public int queued;
+
+        @Label("Passive Scans Queued")
+        public int passiveQueued;
+
+        @Label("Outcome")
+        public String outcome;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded lock-free queue for many producers and a single consumer. Each slot carries a sequence number telling
+// producers whether it is free for their ticket and the consumer whether it has been published.
+public class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    // capacity is rounded up to the next power of two
+    public RingBuffer(final int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        slots = new AtomicReferenceArray<T>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // Returns false without blocking if the buffer is full
+    public boolean offer(final T element) {
+        while (true) {
+            long ticket = tail.get();
+            int index = (int) ticket & mask;
+            long difference = sequences.get(index) - ticket;
+            if (difference == 0) {
+                if (tail.compareAndSet(ticket, ticket + 1)) {
+                    slots.set(index, element);
+                    sequences.set(index, ticket + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    // Must only be called from the single consumer thread, returns null if nothing has been published yet
+    public T poll() {
+        long ticket = head;
+        int index = (int) ticket & mask;
+        if (sequences.get(index) != ticket + 1) {
+            return null;
+        }
+
+        T element = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, ticket + mask + 1);
+        head = ticket + 1;
+        return element;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the active scan queue items that have not finished yet. Items can be added from the spider threads while
+// the monitor polls, finished items are dropped as soon as they are seen so each poll only touches live work. Each
+// item keeps the shape signature of its request, journaled once Burp has scanned it to the end.
+public class ScanTracker {
+    private final Map<IScanQueueItem, Long> active = new ConcurrentHashMap<IScanQueueItem, Long>();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private volatile Journal journal;
+
+    public void setJournal(final Journal journal) {
+        this.journal = journal;
+    }
+
+    public void add(final IScanQueueItem item, final long signature) {
+        if (item != null && active.put(item, signature) == null) {
+            queued.incrementAndGet();
+        }
+    }
+
+    // Poll the remaining items once, removing the finished ones, and return how many are still running
+    public int poll() {
+        Iterator<Map.Entry<IScanQueueItem, Long>> iterator = active.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<IScanQueueItem, Long> entry = iterator.next();
+            IScanQueueItem item = entry.getKey();
+            if (isFinished(item)) {
+                iterator.remove();
+                finished.incrementAndGet();
+                if (journal != null && isComplete(item)) {
+                    journal.shape(entry.getValue());
+                }
+            }
+        }
+
+        return active.size();
+    }
+
+    public boolean isEmpty() {
+        return active.isEmpty();
+    }
+
+    public int size() {
+        return active.size();
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getFinished() {
+        return finished.get();
+    }
+
+    // Scanned to the end, not cancelled or abandoned
+    static boolean isComplete(final IScanQueueItem item) {
+        return item.getPercentageComplete() == 100 || "finished".equals(item.getStatus());
+    }
+
+    static boolean isFinished(final IScanQueueItem item) {
+        if (item.getPercentageComplete() == 100) {
+            return true;
+        }
+
+        String status = item.getStatus();
+        return "finished".equals(status) || "cancelled".equals(status) || "abandoned - too many errors".equals(status)
+                || "waiting to cancel".equals(status);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Answers isInScope for every spider message without calling into Burp or building a URL. The extension includes
+// scope URLs through this class, which keeps the same rules Burp does: protocol, host and port must match and the
+// request target must start with the rule's path. Rules are grouped by host, all targets share one matcher.
+// The local rules only mirror Burp's scope while the extension made every change. Once Burp's scope holds rules the
+// matcher cannot see (a restored configuration, a user edit), it asks Burp once per host, port and request target
+// and keeps the answers in an LRU, cleared on every scope change. Any change reported while no include() is running
+// counts as such a change: Burp does not promise one callback per includeInScope, so they are not counted.
+public class ScopeMatcher implements IScopeChangeListener {
+    static final int RECENT = 4096;
+
+    private final IBurpExtenderCallbacks callbacks;
+    private volatile Map<String, Rule[]> hosts = new HashMap<String, Rule[]>(); // Replaced on change, read lock-free
+    private final AtomicInteger including = new AtomicInteger();                // include() calls in progress
+    private volatile boolean external = false;
+    private final Map<Long, Boolean> recent = new LinkedHashMap<Long, Boolean>(RECENT * 2, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENT;
+        }
+    };
+
+    public ScopeMatcher(final IBurpExtenderCallbacks callbacks) {
+        this.callbacks = callbacks;
+    }
+
+    // Include the URL and everything below it in Burp's scope
+    public void include(final URL url) {
+        add(url);
+        if (!callbacks.isInScope(url)) {
+            including.incrementAndGet();
+            try {
+                callbacks.includeInScope(url);
+            } finally {
+                including.decrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void add(final URL url) {
+        String host = url.getHost().toLowerCase();
+        Rule[] rules = hosts.get(host);
+        rules = rules == null ? new Rule[1] : Arrays.copyOf(rules, rules.length + 1);
+        rules[rules.length - 1] = new Rule("https".equalsIgnoreCase(url.getProtocol()),
+                url.getPort() == -1 ? url.getDefaultPort() : url.getPort(), url.getFile());
+
+        Map<String, Rule[]> changed = new HashMap<String, Rule[]>(hosts);
+        changed.put(host, rules);
+        hosts = changed;
+        clearRecent();
+    }
+
+    public void scopeChanged() {
+        clearRecent();
+        if (including.get() == 0) {
+            deferToBurp("Burp's scope was changed outside the scanner");
+        }
+    }
+
+    // Burp's scope has rules the matcher does not know, ask Burp from now on
+    public void deferToBurp(final String reason) {
+        if (!external) {
+            external = true;
+            System.out.println(reason + ", checking scope with Burp");
+        }
+    }
+
+    // Whether a spider message is in scope, decided from its service and request line
+    public boolean isInScope(final IHttpService service, final byte[] request) {
+        if (service == null || request == null) {
+            return false;
+        }
+
+        boolean https = "https".equalsIgnoreCase(service.getProtocol());
+        String host = service.getHost() == null ? "" : service.getHost().toLowerCase();
+        int port = service.getPort();
+
+        // Request target: origin-form /path?query, or absolute-form http://host/path?query sent to a proxy
+        int lineEnd = HttpBytes.lineEnd(request, 0, request.length);
+        int from = 0;
+        while (from < lineEnd && request[from] != ' ') {
+            from++;
+        }
+        from++;
+        int to = from;
+        while (to < lineEnd && request[to] != ' ') {
+            to++;
+        }
+        if (from < to && request[from] != '/') {
+            int authority = from;
+            while (authority + 2 < to && !(request[authority] == ':' && request[authority + 1] == '/'
+                    && request[authority + 2] == '/')) {
+                authority++;
+            }
+            from = authority + 3;
+            while (from < to && request[from] != '/') {
+                from++;
+            }
+        }
+        if (from > to) {
+            from = to;
+        }
+
+        if (external) {
+            return askBurp(https, host, port, request, from, to);
+        }
+        return matches(hosts.get(host), https, port, request, from, to);
+    }
+
+    // Target URLs, outside the message path
+    public boolean isInScope(final URL url) {
+        if (external) {
+            return callbacks.isInScope(url);
+        }
+        byte[] file = url.getFile().getBytes(HttpBytes.ISO_8859_1);
+        return matches(hosts.get(url.getHost().toLowerCase()), "https".equalsIgnoreCase(url.getProtocol()),
+                url.getPort() == -1 ? url.getDefaultPort() : url.getPort(), file, 0, file.length);
+    }
+
+    // Included by any of the host's rules
+    private static boolean matches(final Rule[] rules, final boolean https, final int port, final byte[] data,
+            final int from, final int to) {
+        if (rules == null) {
+            return false;
+        }
+
+        for (Rule rule : rules) {
+            if (rule.https == https && rule.port == port && rule.prefixOf(data, from, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean askBurp(final boolean https, final String host, final int port, final byte[] request,
+            final int from, final int to) {
+        long key = Hashing.combine(Hashing.combine(Hashing.hash64(host), port * 2 + (https ? 1 : 0)),
+                Hashing.hash64(request, from, to));
+        synchronized (recent) {
+            Boolean decision = recent.get(key);
+            if (decision != null) {
+                return decision.booleanValue();
+            }
+        }
+
+        boolean inScope;
+        try {
+            String path = from == to ? "/" : new String(request, from, to - from, HttpBytes.ISO_8859_1);
+            inScope = callbacks.isInScope(new URL(https ? "https" : "http", host, port, path));
+        } catch (Exception e) {
+            System.out.println("Could not check scope: " + e.getMessage());
+            return false;
+        }
+        synchronized (recent) {
+            recent.put(key, Boolean.valueOf(inScope));
+        }
+        return inScope;
+    }
+
+    private void clearRecent() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    private static final class Rule {
+        final boolean https;
+        final int port;
+        final byte[] prefix;                                  // Path and query the request target must start with
+
+        Rule(final boolean https, final int port, final String prefix) {
+            this.https = https;
+            this.port = port;
+            this.prefix = prefix.getBytes(HttpBytes.ISO_8859_1);
+        }
+
+        boolean prefixOf(final byte[] data, final int from, final int to) {
+            if (to - from < prefix.length) {
+                return prefix.length == 1 && prefix[0] == '/' && from == to; // Empty target is the root
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (data[from + i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
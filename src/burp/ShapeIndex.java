@@ -0,0 +1,149 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Request shapes seen by the active scanner. A shape is the host, method, path with numeric and UUID segments
+// collapsed, and the set of non-cookie parameter names, so /item/12?id=1 and /item/99?id=50000 are the same shape.
+// Signatures are hashed straight from the request bytes and only the first maxPerShape requests of a shape are
+// admitted for active scanning.
+public class ShapeIndex {
+    private final FingerprintTable shapes = new FingerprintTable();
+    private final int maxPerShape;
+    private final AtomicLong skipped = new AtomicLong();
+
+    public ShapeIndex(final int maxPerShape) {
+        this.maxPerShape = Math.max(1, maxPerShape);
+    }
+
+    public long signature(final String host, final byte[] request, final List<IParameter> parameters) {
+        long hash = Hashing.hash64(host.toLowerCase());
+
+        // Method
+        int lineEnd = HttpBytes.lineEnd(request, 0, request.length);
+        int space = 0;
+        while (space < lineEnd && request[space] != ' ') {
+            space++;
+        }
+        hash = Hashing.combine(hash, Hashing.hash64(request, 0, space));
+
+        // Path up to the query string
+        int from = space + 1;
+        int end = from;
+        while (end < lineEnd && request[end] != ' ' && request[end] != '?' && request[end] != '#') {
+            end++;
+        }
+        hash = Hashing.combine(hash, pathHash(request, from, end));
+
+        // Parameter names in any order: sum the name hashes so sorting is not needed
+        long names = 0;
+        for (IParameter parameter : parameters) {
+            if (parameter.getType() == IParameter.PARAM_COOKIE) {
+                continue;
+            }
+            long name = parameter.getNameStart() >= 0 && parameter.getNameEnd() <= request.length
+                    ? Hashing.hash64(request, parameter.getNameStart(), parameter.getNameEnd())
+                    : Hashing.hash64(parameter.getName());
+            names += Hashing.combine(name, parameter.getType());
+        }
+
+        return Hashing.combine(hash, names);
+    }
+
+    // Hash of a path segment by segment, numeric segments and UUIDs hash the same whatever their value
+    static long pathHash(final byte[] data, final int from, final int end) {
+        long path = Hashing.fnvStart();
+        int segment = from;
+        for (int i = from; i <= end; i++) {
+            if (i == end || data[i] == '/') {
+                if (isNumeric(data, segment, i)) {
+                    path = Hashing.fnv(path, '#');
+                } else if (isUuid(data, segment, i)) {
+                    path = Hashing.fnv(path, '~');
+                } else {
+                    path = Hashing.fnv(path, data, segment, i);
+                }
+                path = Hashing.fnv(path, '/');
+                segment = i + 1;
+            }
+        }
+        return Hashing.mix64(path);
+    }
+
+    // Whether admit would still take the shape, without using one of its slots. A full shape counts as skipped.
+    public boolean hasRoom(final long signature) {
+        if (shapes.count(signature) < maxPerShape) {
+            return true;
+        }
+        skipped.incrementAndGet();
+        return false;
+    }
+
+    // Whether no request of the shape was admitted yet
+    public boolean isNew(final long signature) {
+        return shapes.count(signature) == 0;
+    }
+
+    // Returns true while the shape has been admitted fewer than maxPerShape times
+    public boolean admit(final long signature) {
+        if (shapes.increment(signature) <= maxPerShape) {
+            return true;
+        }
+        skipped.incrementAndGet();
+        return false;
+    }
+
+    // Gives back the slot of an admitted request that was never scanned
+    public void release(final long signature) {
+        shapes.decrement(signature);
+    }
+
+    // Counts a scan of the shape finished by an earlier run against maxPerShape
+    public void scanned(final long signature) {
+        shapes.increment(signature);
+    }
+
+    // Shapes admitted at least once, a released slot still counts
+    public long getShapes() {
+        return shapes.size();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    private static boolean isNumeric(final byte[] data, final int from, final int to) {
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 8-4-4-4-12 hex digits
+    private static boolean isUuid(final byte[] data, final int from, final int to) {
+        if (to - from != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            byte b = data[from + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') {
+                    return false;
+                }
+            } else if (!((b >= '0' && b <= '9') || (b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One application to scan: the URL spidering starts from, the cookies added to its requests and the files its
+// URLs and issues are written to
+public class Target {
+    public final URL url;
+    public final String outname;
+    public final String cookies;                              // Full Cookie header line, null to keep the spider's
+    public final CookieRewriter cookieRewriter;
+    public BufferedWriter outissues;
+    public BufferedWriter outurls;
+    public IssueClassifier classifier;
+    public final FingerprintTable urlsSeen = new FingerprintTable(); // URLs already written to _urls.html
+    public final AtomicLong urlsSuppressed = new AtomicLong();      // Duplicate URLs not written again
+    public ActivityTracker activity;                          // Spider requests, set before spidering starts
+    public PageClusters clusters;                             // Near-identical pages, set before spidering starts
+    public volatile boolean spiderStarted = false;
+    public boolean spiderComplete = false;                    // Only touched from the monitor thread
+    public boolean consolidated = false;                      // Repeated issues table started in outissues
+
+    public Target(final String startUrl, final String outname, final String cookie) throws MalformedURLException {
+        URL parsed;
+
+        // If URL doesn't start with a protocol, prepend one
+        if (startUrl.startsWith("http")) {
+            parsed = new URL(startUrl);
+        } else {
+            parsed = new URL("http://" + startUrl);
+        }
+
+        if (parsed.getPort() == -1) // Java reverts to port=-1 if not explicitly specified
+        {
+            parsed = new URL(parsed.getProtocol(), parsed.getHost(), parsed.getDefaultPort(), parsed.getFile());
+        }
+
+        if (parsed.getFile().length() == 0) // Java will assume a blank path if you do not supply one
+        {
+            parsed = new URL(parsed.getProtocol(), parsed.getHost(), parsed.getPort(), "/");
+        }
+
+        this.url = parsed;
+        this.outname = outname;
+        this.cookies = cookie == null ? null : "Cookie: " + cookie;
+        this.cookieRewriter = cookie == null ? null : new CookieRewriter(cookies);
+    }
+
+    // Host key used to route spider traffic and issues to this target
+    public String getHost() {
+        return url.getHost().toLowerCase();
+    }
+
+    // One target per line: URL OUTNAME {COOKIE STRING}, blank lines and lines starting with # are skipped
+    public static List<Target> load(final File file) throws IOException {
+        List<Target> targets = new ArrayList<Target>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+", 3);
+                if (fields.length < 2) {
+                    throw new IOException(file + ":" + lineNumber + ": expected URL OUTNAME {COOKIE STRING}");
+                }
+                targets.add(new Target(fields[0], fields[1], fields.length == 3 ? fields[2] : null));
+            }
+        } finally {
+            reader.close();
+        }
+
+        return targets;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Rebuilds the full URL of a raw request from its request line and Host header in a single pass over the header
+// block. The Host header is looked up by name so reordered headers resolve correctly, and the protocol comes from
+// the message's IHttpService rather than the start URL.
+public final class UrlResolver {
+    private static final byte[] HOST = "host:".getBytes(HttpBytes.ISO_8859_1);
+
+    private UrlResolver() {
+    }
+
+    public static String resolve(final IHttpService service, final byte[] request) {
+        String protocol = service == null || service.getProtocol() == null ? "http" : service.getProtocol();
+
+        int end = HttpBytes.headersEnd(request);
+        if (end < 0) {
+            end = request.length;
+        }
+
+        // Request line: METHOD SP target SP version
+        int lineEnd = HttpBytes.lineEnd(request, 0, end);
+        int targetStart = indexOf(request, (byte) ' ', 0, lineEnd) + 1;
+        int targetEnd = targetStart == 0 ? -1 : indexOf(request, (byte) ' ', targetStart, lineEnd);
+        if (targetEnd < 0) {
+            targetEnd = lineEnd;
+        }
+        String target = targetStart == 0 ? "/" : new String(request, targetStart, targetEnd - targetStart,
+                HttpBytes.ISO_8859_1);
+
+        // Absolute-form targets already carry the host
+        if (target.startsWith("http://") || target.startsWith("https://")) {
+            return target;
+        }
+
+        StringBuilder url = new StringBuilder(protocol.length() + 3 + 64 + target.length());
+        url.append(protocol).append("://");
+
+        int host = HttpBytes.findHeader(request, HOST, end);
+        if (host >= 0) {
+            int from = host + HOST.length;
+            int to = HttpBytes.lineEnd(request, from, end);
+            while (from < to && (request[from] == ' ' || request[from] == '\t')) {
+                from++;
+            }
+            while (to > from && (request[to - 1] == ' ' || request[to - 1] == '\t')) {
+                to--;
+            }
+            url.append(new String(request, from, to - from, HttpBytes.ISO_8859_1));
+        } else if (service != null) {
+            url.append(service.getHost());
+            int port = service.getPort();
+            if (!(port == 80 && "http".equals(protocol)) && !(port == 443 && "https".equals(protocol))) {
+                url.append(':').append(port);
+            }
+        }
+
+        return url.append(target).toString();
+    }
+
+    private static int indexOf(final byte[] message, final byte b, final int from, final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (message[i] == b) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,9 @@
+#!/bin/sh
+#Licensed under the GNU Public License version 3.0 or greater
+#Runs the BurpExtender against the in-memory Burp stand-in in harness/, no Burp Suite jar needed
+
+# Compile the extension together with the stand-in, and quit if any errors occur
+mkdir -p harness-classes
+javac -d harness-classes burp/*.java harness/burp/*.java || exit 1
+# Run with 1GB of memory, passing any --option=value arguments (see HeadlessHarness for the list)
+java -Xmx1024m -classpath harness-classes burp.HeadlessHarness "$@"
@@ -0,0 +1,169 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs BurpExtender against MemoryCallbacks: synthetic spider traffic is pushed through processHttpMessage from a
+// number of threads while scan issues are fired at a fixed rate, then the harness waits for the extender to decide
+// the scan is over and reports how long it all took
+public class HeadlessHarness {
+    private static final String[] ISSUES = { "SQL injection", "Cookie without HttpOnly flag set",
+            "Email addresses disclosed", "Cross-domain Referer leakage", "Password field with autocomplete enabled",
+            "Frameable response (potential Clickjacking)", "Robots.txt file" };
+    private static final String[] SEVERITIES = { "High", "Low", "Information", "Information", "Low", "Information",
+            "Information" };
+
+    public static void main(final String[] args) throws Exception {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                System.out.println("Usage: HeadlessHarness {--option=value ...}");
+                System.out.println("\t--requests=20000 --threads=4 --body-size=4096 --issues-per-second=100");
+                System.out.println("\t--scan-latency=2000 --scan-failures=0.0 --delay=1 --timeout=120");
+                System.out.println("\t--host=harness.local --out=harness --cookie=session=harness");
+                System.out.println("\t--hosts=1 --concurrency=4 (more than one host scans from a target list)");
+                System.out.println("\t--checkpoint-window=60 (seconds between session saves after High issues)");
+                System.out.println("\t--metrics-port=0 (serve /metrics on 127.0.0.1 while the harness runs)");
+                System.out.println("\t--resume=false (carry on from the journal of the previous harness run)");
+                System.out.println("\t--max-per-cluster=5 (near-identical pages actively scanned, 0 = all)");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        final int requests = Integer.parseInt(option(options, "requests", "20000"));
+        final int threads = Integer.parseInt(option(options, "threads", "4"));
+        final int issuesPerSecond = Integer.parseInt(option(options, "issues-per-second", "100"));
+        final String host = option(options, "host", "harness.local");
+        final int hosts = Integer.parseInt(option(options, "hosts", "1"));
+        final String out = option(options, "out", "harness");
+        final String cookie = option(options, "cookie", "session=harness");
+
+        final BurpExtender extender = new BurpExtender();
+        extender.delay = Integer.parseInt(option(options, "delay", "1"));
+        final MemoryCallbacks callbacks = new MemoryCallbacks(extender);
+        callbacks.scanLatencyMillis = Long.parseLong(option(options, "scan-latency", "2000"));
+        callbacks.scanFailureRate = Double.parseDouble(option(options, "scan-failures", "0.0"));
+
+        // Several hosts are scanned the way a --targets list would be, host0.harness.local, host1...
+        final SpiderTraffic[] traffics = new SpiderTraffic[hosts];
+        List<String> arguments = new ArrayList<String>();
+        int bodySize = Integer.parseInt(option(options, "body-size", "4096"));
+        if (hosts > 1) {
+            File targetList = new File(out + "_targets.txt");
+            PrintWriter writer = new PrintWriter(targetList, "UTF-8");
+            for (int h = 0; h < hosts; h++) {
+                writer.println("http://host" + h + "." + host + "/ " + out + "-host" + h + " " + cookie);
+                traffics[h] = new SpiderTraffic("host" + h + "." + host, bodySize);
+            }
+            writer.close();
+            arguments.add("--targets=" + targetList);
+            arguments.add("--concurrency=" + option(options, "concurrency", "4"));
+        } else {
+            traffics[0] = new SpiderTraffic(host, bodySize);
+            arguments.add("http://" + host + "/");
+            arguments.add(out);
+            arguments.add(cookie);
+        }
+
+        // Read while the reports are opened, before the fields below can be set
+        if (Boolean.parseBoolean(option(options, "resume", "false"))) {
+            arguments.add("--resume");
+        }
+        extender.setCommandLineArgs(arguments.toArray(new String[arguments.size()]));
+        extender.checkpointWindow = Integer.parseInt(option(options, "checkpoint-window", "60"));
+        extender.metricsPort = Integer.parseInt(option(options, "metrics-port", "0"));
+        extender.maxPerCluster = Integer.parseInt(option(options, "max-per-cluster", "5"));
+        extender.registerExtenderCallbacks(callbacks);
+
+        // Scan issues, fired in small batches every 10ms to reach the requested rate
+        final AtomicLong issues = new AtomicLong();
+        ScheduledExecutorService issuer = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("harness-issues"));
+        if (issuesPerSecond > 0) {
+            final long start = System.nanoTime();
+            issuer.scheduleAtFixedRate(new Runnable() {
+                public void run() {
+                    long due = (System.nanoTime() - start) * issuesPerSecond / 1000000000L;
+                    while (issues.get() < due) {
+                        int i = (int) issues.getAndIncrement();
+                        SpiderTraffic traffic = traffics[i % hosts];
+                        try {
+                            MemoryRequestResponse message = new MemoryRequestResponse(traffic.service(),
+                                    traffic.request(i), traffic.response(i));
+                            extender.newScanIssue(new MemoryScanIssue(new URL("http://" + traffic.service().getHost() + "/issue/" + i),
+                                    ISSUES[i % ISSUES.length], SEVERITIES[i % SEVERITIES.length], message));
+                        } catch (Exception e) {
+                            System.out.println("Could not fire issue: " + e.getMessage());
+                        }
+                    }
+                }
+            }, 10, 10, TimeUnit.MILLISECONDS);
+        }
+
+        // Spider traffic, each thread takes every threads-th message
+        Thread[] workers = new Thread[threads];
+        long spiderStart = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = offset; i < requests; i += threads) {
+                        SpiderTraffic traffic = traffics[i % hosts];
+                        MemoryRequestResponse message = new MemoryRequestResponse(traffic.service(),
+                                traffic.request(i), null);
+                        extender.processHttpMessage("spider", true, message);
+                        message.setResponse(traffic.response(i));
+                        extender.processHttpMessage("spider", false, message);
+                    }
+                }
+            }, "harness-spider-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long spiderNanos = System.nanoTime() - spiderStart;
+        issuer.shutdown();
+
+        long timeout = Long.parseLong(option(options, "timeout", "120"));
+        boolean exited = callbacks.exited.await(timeout, TimeUnit.SECONDS);
+        long totalNanos = System.nanoTime() - spiderStart;
+
+        System.out.println();
+        System.out.println("spider messages:   " + requests + " in " + spiderNanos / 1000000 + " ms ("
+                + (long) (requests * 1e9 / spiderNanos) + " msg/s, " + spiderNanos / requests / 2
+                + " ns per callback)");
+        System.out.println("passive scans:     " + callbacks.passiveScans.get());
+        System.out.println("active scans:      " + callbacks.activeScans.get());
+        System.out.println("issues fired:      " + issues.get());
+        System.out.println("alerts:            " + callbacks.alerts.get());
+        System.out.println("states saved:      " + callbacks.savedStates.get());
+        System.out.println("scan finished:     " + (exited ? "yes, after " + totalNanos / 1000000 + " ms"
+                : "no, timed out after " + timeout + " s"));
+
+        if (!exited) {
+            callbacks.exitSuite(false);
+        }
+        System.exit(exited ? 0 : 1);
+    }
+
+    private static String option(final Map<String, String> options, final String name, final String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+}
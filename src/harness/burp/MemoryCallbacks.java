@@ -0,0 +1,346 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.awt.Component;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory stand-in for Burp's callbacks. Scope, spider and scanner calls are recorded and counted, active scans
+// return MemoryScanQueueItems that finish after a configurable latency, and exitSuite closes the extender the way
+// Burp would. UI, proxy, intruder and network features are empty stubs: registrations and sends are ignored and
+// factories return null.
+public class MemoryCallbacks implements IBurpExtenderCallbacks {
+    public final AtomicLong passiveScans = new AtomicLong();
+    public final AtomicLong activeScans = new AtomicLong();
+    public final AtomicLong alerts = new AtomicLong();
+    public final AtomicLong savedStates = new AtomicLong();
+    public final List<URL> spidered = new CopyOnWriteArrayList<URL>();
+    public final CountDownLatch exited = new CountDownLatch(1);
+
+    public long scanLatencyMillis = 2000;  // Time for an active scan item to reach 100%
+    public double scanFailureRate = 0.0;   // Fraction of active scan items that get abandoned
+    public boolean quiet = false;          // Do not print alerts
+
+    private final IExtensionHelpers helpers = new MemoryHelpers();
+    private final List<URL> included = new CopyOnWriteArrayList<URL>();
+    private final List<URL> excluded = new CopyOnWriteArrayList<URL>();
+    private final List<IExtensionStateListener> stateListeners = new CopyOnWriteArrayList<IExtensionStateListener>();
+    private final List<IScopeChangeListener> scopeListeners = new CopyOnWriteArrayList<IScopeChangeListener>();
+    private final List<IScannerCheck> scannerChecks = new CopyOnWriteArrayList<IScannerCheck>();
+    private final Map<String, String> settings = new ConcurrentHashMap<String, String>();
+    private final Random random = new Random(42);
+    private final IBurpExtender extender;
+    private volatile String extensionName;
+
+    public MemoryCallbacks(final IBurpExtender extender) {
+        this.extender = extender;
+    }
+
+    public String getExtensionName() {
+        return extensionName;
+    }
+
+    public List<IScannerCheck> getScannerChecks() {
+        return scannerChecks;
+    }
+
+    public void setExtensionName(final String name) {
+        extensionName = name;
+    }
+
+    public IExtensionHelpers getHelpers() {
+        return helpers;
+    }
+
+    public OutputStream getStdout() {
+        return System.out;
+    }
+
+    public OutputStream getStderr() {
+        return System.err;
+    }
+
+    public void registerExtensionStateListener(final IExtensionStateListener listener) {
+        stateListeners.add(listener);
+    }
+
+    public void registerHttpListener(final IHttpListener listener) {
+    }
+
+    public void registerProxyListener(final IProxyListener listener) {
+    }
+
+    public void registerScannerListener(final IScannerListener listener) {
+    }
+
+    public void registerScopeChangeListener(final IScopeChangeListener listener) {
+        scopeListeners.add(listener);
+    }
+
+    public void registerContextMenuFactory(final IContextMenuFactory factory) {
+    }
+
+    public void registerMessageEditorTabFactory(final IMessageEditorTabFactory factory) {
+    }
+
+    public void registerScannerInsertionPointProvider(final IScannerInsertionPointProvider provider) {
+    }
+
+    public void registerScannerCheck(final IScannerCheck check) {
+        scannerChecks.add(check);
+    }
+
+    public void registerIntruderPayloadGeneratorFactory(final IIntruderPayloadGeneratorFactory factory) {
+    }
+
+    public void registerIntruderPayloadProcessor(final IIntruderPayloadProcessor processor) {
+    }
+
+    public void registerSessionHandlingAction(final ISessionHandlingAction action) {
+    }
+
+    public void unloadExtension() {
+        for (IExtensionStateListener listener : stateListeners) {
+            listener.extensionUnloaded();
+        }
+        exited.countDown();
+    }
+
+    public void addSuiteTab(final ITab tab) {
+    }
+
+    public void removeSuiteTab(final ITab tab) {
+    }
+
+    public void customizeUiComponent(final Component component) {
+    }
+
+    public IMessageEditor createMessageEditor(final IMessageEditorController controller, final boolean editable) {
+        return null;
+    }
+
+    public String[] getCommandLineArguments() {
+        return new String[0];
+    }
+
+    public void saveExtensionSetting(final String name, final String value) {
+        if (value == null) {
+            settings.remove(name);
+        } else {
+            settings.put(name, value);
+        }
+    }
+
+    public String loadExtensionSetting(final String name) {
+        return settings.get(name);
+    }
+
+    public ITextEditor createTextEditor() {
+        return null;
+    }
+
+    public void sendToRepeater(final String host, final int port, final boolean useHttps, final byte[] request,
+            final String tabCaption) {
+    }
+
+    public void sendToIntruder(final String host, final int port, final boolean useHttps, final byte[] request) {
+    }
+
+    public void sendToIntruder(final String host, final int port, final boolean useHttps, final byte[] request,
+            final List<int[]> payloadPositionOffsets) {
+    }
+
+    public void sendToSpider(final URL url) {
+        spidered.add(url);
+    }
+
+    public IScanQueueItem doActiveScan(final String host, final int port, final boolean useHttps,
+            final byte[] request) {
+        activeScans.incrementAndGet();
+        boolean fails;
+        synchronized (random) {
+            fails = random.nextDouble() < scanFailureRate;
+        }
+        return new MemoryScanQueueItem(scanLatencyMillis, fails);
+    }
+
+    public IScanQueueItem doActiveScan(final String host, final int port, final boolean useHttps,
+            final byte[] request, final List<int[]> insertionPointOffsets) {
+        return doActiveScan(host, port, useHttps, request);
+    }
+
+    public void doPassiveScan(final String host, final int port, final boolean useHttps, final byte[] request,
+            final byte[] response) {
+        passiveScans.incrementAndGet();
+    }
+
+    public IHttpRequestResponse makeHttpRequest(final IHttpService httpService, final byte[] request) {
+        return null;
+    }
+
+    public byte[] makeHttpRequest(final String host, final int port, final boolean useHttps, final byte[] request) {
+        return null;
+    }
+
+    public boolean isInScope(final URL url) {
+        return matches(included, url) && !matches(excluded, url);
+    }
+
+    private static boolean matches(final List<URL> prefixes, final URL url) {
+        for (URL prefix : prefixes) {
+            if (prefix.getProtocol().equals(url.getProtocol()) && prefix.getHost().equalsIgnoreCase(url.getHost())
+                    && effectivePort(prefix) == effectivePort(url) && url.getFile().startsWith(prefix.getFile())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int effectivePort(final URL url) {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+
+    public void includeInScope(final URL url) {
+        included.add(url);
+        scopeChanged();
+    }
+
+    public void excludeFromScope(final URL url) {
+        excluded.add(url);
+        scopeChanged();
+    }
+
+    private void scopeChanged() {
+        for (IScopeChangeListener listener : scopeListeners) {
+            listener.scopeChanged();
+        }
+    }
+
+    public void issueAlert(final String message) {
+        alerts.incrementAndGet();
+        if (!quiet) {
+            System.out.println("alert: " + message);
+        }
+    }
+
+    public IHttpRequestResponse[] getProxyHistory() {
+        return new IHttpRequestResponse[0];
+    }
+
+    public IHttpRequestResponse[] getSiteMap(final String urlPrefix) {
+        return new IHttpRequestResponse[0];
+    }
+
+    public IScanIssue[] getScanIssues(final String urlPrefix) {
+        return new IScanIssue[0];
+    }
+
+    public List<ICookie> getCookieJarContents() {
+        return new CopyOnWriteArrayList<ICookie>();
+    }
+
+    public void updateCookieJar(final ICookie cookie) {
+    }
+
+    public void addToSiteMap(final IHttpRequestResponse item) {
+    }
+
+    // Nothing to restore, the harness starts from an empty configuration
+    public void restoreState(final File file) {
+    }
+
+    public void saveState(final File file) {
+        try {
+            new FileOutputStream(file).close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        savedStates.incrementAndGet();
+    }
+
+    public Map<String, String> saveConfig() {
+        return new ConcurrentHashMap<String, String>();
+    }
+
+    public void loadConfig(final Map<String, String> config) {
+    }
+
+    public void setProxyInterceptionEnabled(final boolean enabled) {
+    }
+
+    public String[] getBurpVersion() {
+        return new String[] { "Burp Suite Harness", "0", "0" };
+    }
+
+    // Burp calls applicationClosing on the way out, then the JVM exits. The harness keeps running instead.
+    public void exitSuite(final boolean promptUser) {
+        if (exited.getCount() > 0) {
+            extender.applicationClosing();
+            exited.countDown();
+        }
+    }
+
+    public ITempFile saveToTempFile(final byte[] buffer) {
+        return null;
+    }
+
+    public IHttpRequestResponsePersisted saveBuffersToTempFiles(final IHttpRequestResponse httpRequestResponse) {
+        return null;
+    }
+
+    public IHttpRequestResponseWithMarkers applyMarkers(final IHttpRequestResponse httpRequestResponse,
+            final List<int[]> requestMarkers, final List<int[]> responseMarkers) {
+        return null;
+    }
+
+    public String getToolName(final int toolFlag) {
+        switch (toolFlag) {
+        case TOOL_SPIDER:
+            return "spider";
+        case TOOL_SCANNER:
+            return "scanner";
+        case TOOL_PROXY:
+            return "proxy";
+        default:
+            return "suite";
+        }
+    }
+
+    public void addScanIssue(final IScanIssue issue) {
+        extender.newScanIssue(issue);
+    }
+
+    @Deprecated
+    public String[][] getParameters(final byte[] request) {
+        List<IParameter> parameters = helpers.analyzeRequest(request).getParameters();
+        String[][] result = new String[parameters.size()][];
+        for (int i = 0; i < result.length; i++) {
+            IParameter parameter = parameters.get(i);
+            result[i] = new String[] { parameter.getName(), parameter.getValue(), String.valueOf(parameter.getType()) };
+        }
+        return result;
+    }
+
+    @Deprecated
+    public String[] getHeaders(final byte[] message) {
+        return helpers.analyzeResponse(message).getHeaders().toArray(new String[0]);
+    }
+
+    @Deprecated
+    public void registerMenuItem(final String menuItemCaption, final IMenuItemHandler menuItemHandler) {
+    }
+}
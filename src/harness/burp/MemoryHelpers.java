@@ -0,0 +1,382 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+// Just enough HTTP parsing to stand in for Burp's helpers: headers, URL and body parameters, cookies
+public class MemoryHelpers implements IExtensionHelpers {
+
+    public IRequestInfo analyzeRequest(final IHttpRequestResponse request) {
+        return analyzeRequest(request.getHttpService(), request.getRequest());
+    }
+
+    public IRequestInfo analyzeRequest(final IHttpService httpService, final byte[] request) {
+        return new RequestInfo(httpService, request);
+    }
+
+    public IRequestInfo analyzeRequest(final byte[] request) {
+        return new RequestInfo(null, request);
+    }
+
+    public IResponseInfo analyzeResponse(final byte[] response) {
+        return new ResponseInfo(response);
+    }
+
+    public IParameter getRequestParameter(final byte[] request, final String parameterName) {
+        for (IParameter parameter : analyzeRequest(request).getParameters()) {
+            if (parameter.getName().equals(parameterName)) {
+                return parameter;
+            }
+        }
+        return null;
+    }
+
+    public String urlDecode(final String data) {
+        try {
+            return URLDecoder.decode(data, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String urlEncode(final String data) {
+        try {
+            return URLEncoder.encode(data, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public byte[] urlDecode(final byte[] data) {
+        return stringToBytes(urlDecode(bytesToString(data)));
+    }
+
+    public byte[] urlEncode(final byte[] data) {
+        return stringToBytes(urlEncode(bytesToString(data)));
+    }
+
+    public byte[] base64Decode(final String data) {
+        return Base64.getDecoder().decode(data);
+    }
+
+    public byte[] base64Decode(final byte[] data) {
+        return base64Decode(bytesToString(data));
+    }
+
+    public String base64Encode(final String data) {
+        return base64Encode(stringToBytes(data));
+    }
+
+    public String base64Encode(final byte[] data) {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    public byte[] stringToBytes(final String data) {
+        return data.getBytes(HttpBytes.ISO_8859_1);
+    }
+
+    public String bytesToString(final byte[] data) {
+        return new String(data, HttpBytes.ISO_8859_1);
+    }
+
+    public int indexOf(final byte[] data, final byte[] pattern, final boolean caseSensitive, final int from,
+            final int to) {
+        for (int i = from; i <= to - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && same(data[i + j], pattern[j], caseSensitive)) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean same(final byte a, final byte b, final boolean caseSensitive) {
+        return caseSensitive ? a == b : Character.toLowerCase((char) a) == Character.toLowerCase((char) b);
+    }
+
+    public byte[] buildHttpMessage(final List<String> headers, final byte[] body) {
+        StringBuilder message = new StringBuilder();
+        for (String header : headers) {
+            message.append(header).append("\r\n");
+        }
+        message.append("\r\n");
+        byte[] head = stringToBytes(message.toString());
+        byte[] result = new byte[head.length + (body == null ? 0 : body.length)];
+        System.arraycopy(head, 0, result, 0, head.length);
+        if (body != null) {
+            System.arraycopy(body, 0, result, head.length, body.length);
+        }
+        return result;
+    }
+
+    public byte[] buildHttpRequest(final URL url) {
+        String file = url.getFile().length() == 0 ? "/" : url.getFile();
+        return stringToBytes("GET " + file + " HTTP/1.1\r\nHost: " + url.getHost() + "\r\n\r\n");
+    }
+
+    public byte[] addParameter(final byte[] request, final IParameter parameter) {
+        return request;
+    }
+
+    public byte[] removeParameter(final byte[] request, final IParameter parameter) {
+        return request;
+    }
+
+    public byte[] updateParameter(final byte[] request, final IParameter parameter) {
+        return request;
+    }
+
+    public byte[] toggleRequestMethod(final byte[] request) {
+        return request;
+    }
+
+    public IHttpService buildHttpService(final String host, final int port, final String protocol) {
+        return new MemoryHttpService(host, port, protocol);
+    }
+
+    public IHttpService buildHttpService(final String host, final int port, final boolean useHttps) {
+        return new MemoryHttpService(host, port, useHttps ? "https" : "http");
+    }
+
+    public IParameter buildParameter(final String name, final String value, final byte type) {
+        return new Parameter(type, name, value, -1, -1, -1, -1);
+    }
+
+    public IScannerInsertionPoint makeScannerInsertionPoint(final String insertionPointName,
+            final byte[] baseRequest, final int from, final int to) {
+        return null;
+    }
+
+    // Header lines of a message up to the blank line, and the offset of the body after it
+    private static int splitHeaders(final byte[] message, final List<String> headers) {
+        int end = HttpBytes.headersEnd(message);
+        int limit = end < 0 ? message.length : end;
+        int line = 0;
+        while (line < limit) {
+            int lineEnd = HttpBytes.lineEnd(message, line, limit);
+            headers.add(new String(message, line, lineEnd - line, HttpBytes.ISO_8859_1));
+            line = HttpBytes.nextLine(message, lineEnd);
+        }
+        if (end < 0) {
+            return message.length;
+        }
+        return HttpBytes.nextLine(message, HttpBytes.nextLine(message, end));
+    }
+
+    static class RequestInfo implements IRequestInfo {
+        private final List<String> headers = new ArrayList<String>();
+        private final List<IParameter> parameters = new ArrayList<IParameter>();
+        private final int bodyOffset;
+        private final String method;
+        private final URL url;
+        private byte contentType = CONTENT_TYPE_NONE;
+
+        RequestInfo(final IHttpService service, final byte[] request) {
+            bodyOffset = splitHeaders(request, headers);
+            String requestLine = headers.isEmpty() ? "" : headers.get(0);
+            String[] parts = requestLine.split(" ");
+            method = parts[0];
+
+            // URL parameters from the request line
+            int targetStart = requestLine.indexOf(' ') + 1;
+            int query = requestLine.indexOf('?');
+            if (query > 0 && parts.length > 1) {
+                int queryEnd = targetStart + parts[1].length();
+                parseParameters(request, query + 1, queryEnd, '&', IParameter.PARAM_URL);
+            }
+
+            // Body and cookie parameters, found by header offset in the raw request
+            for (String header : headers) {
+                String lower = header.toLowerCase();
+                if (lower.startsWith("content-type:")) {
+                    if (lower.contains("application/x-www-form-urlencoded")) {
+                        contentType = CONTENT_TYPE_URL_ENCODED;
+                    } else if (lower.contains("multipart")) {
+                        contentType = CONTENT_TYPE_MULTIPART;
+                    } else if (lower.contains("json")) {
+                        contentType = CONTENT_TYPE_JSON;
+                    } else if (lower.contains("xml")) {
+                        contentType = CONTENT_TYPE_XML;
+                    } else {
+                        contentType = CONTENT_TYPE_UNKNOWN;
+                    }
+                }
+            }
+            if (contentType == CONTENT_TYPE_URL_ENCODED) {
+                parseParameters(request, bodyOffset, request.length, '&', IParameter.PARAM_BODY);
+            }
+            int offset = 0;
+            for (String header : headers) {
+                if (header.toLowerCase().startsWith("cookie:")) {
+                    int start = offset + "cookie:".length();
+                    while (start < request.length && request[start] == ' ') {
+                        start++;
+                    }
+                    parseParameters(request, start, offset + header.length(), ';', IParameter.PARAM_COOKIE);
+                }
+                offset = HttpBytes.nextLine(request, offset + header.length());
+            }
+
+            URL parsed = null;
+            try {
+                parsed = new URL(UrlResolver.resolve(service, request));
+            } catch (MalformedURLException e) {
+                parsed = null;
+            }
+            url = parsed;
+        }
+
+        private void parseParameters(final byte[] message, final int from, final int to, final char separator,
+                final byte type) {
+            int start = from;
+            while (start < to) {
+                int end = start;
+                while (end < to && message[end] != separator) {
+                    end++;
+                }
+                int nameStart = start;
+                while (nameStart < end && message[nameStart] == ' ') {
+                    nameStart++;
+                }
+                int equals = nameStart;
+                while (equals < end && message[equals] != '=') {
+                    equals++;
+                }
+                if (equals > nameStart) {
+                    int valueStart = Math.min(equals + 1, end);
+                    parameters.add(new Parameter(type,
+                            new String(message, nameStart, equals - nameStart, HttpBytes.ISO_8859_1),
+                            new String(message, valueStart, end - valueStart, HttpBytes.ISO_8859_1),
+                            nameStart, equals, valueStart, end));
+                }
+                start = end + 1;
+            }
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+        public List<IParameter> getParameters() {
+            return parameters;
+        }
+
+        public int getBodyOffset() {
+            return bodyOffset;
+        }
+
+        public byte getContentType() {
+            return contentType;
+        }
+    }
+
+    static class ResponseInfo implements IResponseInfo {
+        private final List<String> headers = new ArrayList<String>();
+        private final int bodyOffset;
+        private final short statusCode;
+
+        ResponseInfo(final byte[] response) {
+            bodyOffset = splitHeaders(response, headers);
+            short status = 0;
+            if (!headers.isEmpty()) {
+                String[] parts = headers.get(0).split(" ");
+                if (parts.length > 1) {
+                    try {
+                        status = Short.parseShort(parts[1]);
+                    } catch (NumberFormatException e) {
+                        status = 0;
+                    }
+                }
+            }
+            statusCode = status;
+        }
+
+        public List<String> getHeaders() {
+            return headers;
+        }
+
+        public int getBodyOffset() {
+            return bodyOffset;
+        }
+
+        public short getStatusCode() {
+            return statusCode;
+        }
+
+        public List<ICookie> getCookies() {
+            return Collections.emptyList();
+        }
+    }
+
+    static class Parameter implements IParameter {
+        private final byte type;
+        private final String name;
+        private final String value;
+        private final int nameStart;
+        private final int nameEnd;
+        private final int valueStart;
+        private final int valueEnd;
+
+        Parameter(final byte type, final String name, final String value, final int nameStart, final int nameEnd,
+                final int valueStart, final int valueEnd) {
+            this.type = type;
+            this.name = name;
+            this.value = value;
+            this.nameStart = nameStart;
+            this.nameEnd = nameEnd;
+            this.valueStart = valueStart;
+            this.valueEnd = valueEnd;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getNameStart() {
+            return nameStart;
+        }
+
+        public int getNameEnd() {
+            return nameEnd;
+        }
+
+        public int getValueStart() {
+            return valueStart;
+        }
+
+        public int getValueEnd() {
+            return valueEnd;
+        }
+    }
+}
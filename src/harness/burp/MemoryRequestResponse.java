@@ -0,0 +1,60 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+public class MemoryRequestResponse implements IHttpRequestResponse {
+    private volatile byte[] request;
+    private volatile byte[] response;
+    private volatile IHttpService httpService;
+    private String comment;
+    private String highlight;
+
+    public MemoryRequestResponse(final IHttpService httpService, final byte[] request, final byte[] response) {
+        this.httpService = httpService;
+        this.request = request;
+        this.response = response;
+    }
+
+    public byte[] getRequest() {
+        return request;
+    }
+
+    public void setRequest(final byte[] message) {
+        request = message;
+    }
+
+    public byte[] getResponse() {
+        return response;
+    }
+
+    public void setResponse(final byte[] message) {
+        response = message;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public void setComment(final String comment) {
+        this.comment = comment;
+    }
+
+    public String getHighlight() {
+        return highlight;
+    }
+
+    public void setHighlight(final String color) {
+        highlight = color;
+    }
+
+    public IHttpService getHttpService() {
+        return httpService;
+    }
+
+    public void setHttpService(final IHttpService httpService) {
+        this.httpService = httpService;
+    }
+}
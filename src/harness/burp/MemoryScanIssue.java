@@ -0,0 +1,67 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.net.URL;
+
+public class MemoryScanIssue implements IScanIssue {
+    private final URL url;
+    private final String name;
+    private final String severity;
+    private final IHttpRequestResponse message;
+
+    public MemoryScanIssue(final URL url, final String name, final String severity,
+            final IHttpRequestResponse message) {
+        this.url = url;
+        this.name = name;
+        this.severity = severity;
+        this.message = message;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public String getIssueName() {
+        return name;
+    }
+
+    public int getIssueType() {
+        return name.hashCode() & 0xffffff;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getConfidence() {
+        return "Certain";
+    }
+
+    public String getIssueBackground() {
+        return "Synthetic issue background for " + name + ".";
+    }
+
+    public String getRemediationBackground() {
+        return "Synthetic remediation background.";
+    }
+
+    public String getIssueDetail() {
+        return "Synthetic issue found at <b>" + url + "</b>.";
+    }
+
+    public String getRemediationDetail() {
+        return null;
+    }
+
+    public IHttpRequestResponse[] getHttpMessages() {
+        return new IHttpRequestResponse[] { message };
+    }
+
+    public IHttpService getHttpService() {
+        return message.getHttpService();
+    }
+}
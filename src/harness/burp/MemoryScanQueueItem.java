@@ -0,0 +1,61 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Active scan item whose progress follows the wall clock: it reaches 100% latencyMillis after it was queued, or
+// gets abandoned halfway if it was created to fail
+public class MemoryScanQueueItem implements IScanQueueItem {
+    private final long started = System.nanoTime();
+    private final long latencyNanos;
+    private final boolean fails;
+    private volatile boolean cancelled;
+
+    public MemoryScanQueueItem(final long latencyMillis, final boolean fails) {
+        this.latencyNanos = Math.max(1, latencyMillis * 1000000L);
+        this.fails = fails;
+    }
+
+    public String getStatus() {
+        if (cancelled) {
+            return "cancelled";
+        }
+        byte percentage = progress();
+        if (fails && percentage >= 50) {
+            return "abandoned - too many errors";
+        }
+        return percentage == 100 ? "finished" : percentage + "% complete";
+    }
+
+    public byte getPercentageComplete() {
+        byte percentage = progress();
+        return fails && percentage >= 50 ? 50 : percentage;
+    }
+
+    private byte progress() {
+        long elapsed = System.nanoTime() - started;
+        return (byte) Math.min(100, elapsed * 100 / latencyNanos);
+    }
+
+    public int getNumRequests() {
+        return getPercentageComplete();
+    }
+
+    public int getNumErrors() {
+        return fails ? getPercentageComplete() : 0;
+    }
+
+    public int getNumInsertionPoints() {
+        return 1;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public IScanIssue[] getIssues() {
+        return new IScanIssue[0];
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+import java.util.concurrent.TimeUnit;
+
+// Steps ActivityTracker through spider traffic on a virtual clock, sampled once a second like the monitor does:
+// a burst, a slow trickle, silence, a slow crawl and a stray request after quiescence. Prints the rate at each phase
+// change and exits with 1 when a phase ends quiescent too early or too late.
+public class QuiescenceCheck {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int WINDOW = 30;
+
+    private final VirtualClock clock = new VirtualClock();
+    private final ActivityTracker tracker = new ActivityTracker(clock, WINDOW, TimeUnit.SECONDS);
+    private int failures;
+    private int second;
+
+    public static void main(final String[] args) {
+        QuiescenceCheck check = new QuiescenceCheck();
+        check.run();
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    void run() {
+        // Nothing sent yet: the first window is never quiescent
+        expect("startup", run(WINDOW - 1, 0), -1);
+
+        // Burst of 50 requests a second, then a trickle of one every 5 seconds
+        expect("burst", run(60, 50), -1);
+        expect("trickle", run(120, 0.2), -1);
+
+        // Silence: quiescent once the rate has decayed and then stayed low for a window, within three windows
+        int quiet = run(3 * WINDOW, 0);
+        expect("silence", quiet, 3 * WINDOW);
+
+        // A crawl of one request every 15 seconds: the rate dips below IDLE_RATE between requests, but never for a
+        // whole window
+        tracker.record();
+        expect("slow crawl", run(6 * WINDOW, 1.0 / 15), -1);
+        expect("silence", run(3 * WINDOW, 0), 3 * WINDOW);
+
+        // One stray request lifts the rate briefly, then a window of low rate has to pass again
+        tracker.record();
+        expect("stray request", run(2 * WINDOW, 0), 2 * WINDOW - 1);
+
+        // A burst straight into silence takes a little longer to decay, within four windows
+        expect("second burst", run(10, 50), -1);
+        expect("silence", run(4 * WINDOW, 0), 4 * WINDOW);
+    }
+
+    // Runs seconds of traffic at perSecond requests a second, returns the first second it was quiescent or -1
+    int run(final int seconds, final double perSecond) {
+        double owed = 0;
+        int quiescent = -1;
+        for (int i = 0; i < seconds; i++) {
+            owed += perSecond;
+            for (; owed >= 1; owed--) {
+                tracker.record();
+            }
+            clock.now += SECOND;
+            second++;
+            tracker.sample();
+            if (quiescent < 0 && tracker.isQuiescent()) {
+                quiescent = i;
+            }
+        }
+        return quiescent;
+    }
+
+    // latest < 0: must not become quiescent, otherwise quiescent at or before second latest of the phase
+    void expect(final String phase, final int quiescent, final int latest) {
+        boolean ok = latest < 0 ? quiescent < 0 : quiescent >= 0 && quiescent <= latest;
+        System.out.println(String.format("%-14s at %4ds: rate %8.4f/s, %s %s", phase, second, tracker.getRate(),
+                quiescent < 0 ? "active" : "quiescent after " + (quiescent + 1) + "s", ok ? "ok" : "FAILED"));
+        if (!ok) {
+            failures++;
+        }
+    }
+
+    static final class VirtualClock implements Clock {
+        long now = 1;
+
+        public long nanoTime() {
+            return now;
+        }
+    }
+}
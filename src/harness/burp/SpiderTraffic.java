@@ -0,0 +1,117 @@
+/*
+ * Burp Headless scanner: 2013 Daniel del Hoyo <danieldelhoyo AT zalando DOT de>
+ * Licensed under the GNU Public License version 3.0 or greater
+ */
+
+package burp;
+
+// Deterministic synthetic spider traffic for one host: a mix of GET and form POST requests with the headers in
+// different orders, with and without cookies, answered by HTML pages, images and the odd 404
+public class SpiderTraffic {
+    private static final String[] PATHS = { "/", "/catalog/item", "/search", "/account/login", "/static/logo.png",
+            "/blog/2013/10/headless-scanning", "/api/orders" };
+
+    private final String host;
+    private final IHttpService service;
+    private final int bodySize;
+    private final String padding;
+
+    public SpiderTraffic(final String host, final int bodySize) {
+        this(host, bodySize, 0);
+    }
+
+    // requestPadding grows every request by that many bytes through a long analytics cookie or form field
+    public SpiderTraffic(final String host, final int bodySize, final int requestPadding) {
+        this.host = host;
+        this.service = new MemoryHttpService(host, 80, "http");
+        this.bodySize = bodySize;
+        StringBuilder pad = new StringBuilder(requestPadding);
+        for (int i = 0; i < requestPadding; i++) {
+            pad.append((char) ('a' + i % 26));
+        }
+        this.padding = pad.toString();
+    }
+
+    public IHttpService service() {
+        return service;
+    }
+
+    public byte[] request(final int i) {
+        String path = PATHS[i % PATHS.length];
+        boolean post = i % 5 == 4;
+        String target = path + (path.endsWith(".png") ? "" : "?id=" + i + "&page=" + (i % 7) + "&sort=asc");
+        String body = post ? "user=user" + i + "&password=secret&remember=on&csrf=" + Integer.toHexString(i * 31)
+                + (padding.length() > 0 ? "&state=" + padding : "") : "";
+
+        StringBuilder request = new StringBuilder(512 + body.length());
+        request.append(post ? "POST " : "GET ").append(target).append(" HTTP/1.1\r\n");
+        switch (i % 3) {
+        case 0:
+            request.append("Host: ").append(host).append("\r\n");
+            request.append("User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:24.0) Gecko/20100101 Firefox/24.0\r\n");
+            request.append("Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n");
+            request.append("Cookie: JSESSIONID=").append(Integer.toHexString(i)).append("; lang=en");
+            request.append(padding.length() > 0 && !post ? "; _ga=" + padding : "").append("\r\n");
+            break;
+        case 1:
+            request.append("User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:24.0) Gecko/20100101 Firefox/24.0\r\n");
+            request.append("Accept: */*\r\n");
+            request.append("Accept-Language: en-US,en;q=0.5\r\n");
+            request.append("Referer: http://").append(host).append("/\r\n");
+            request.append("Host: ").append(host).append("\r\n");
+            if (padding.length() > 0 && !post) {
+                request.append("X-Client-State: ").append(padding).append("\r\n");
+            }
+            break;
+        default:
+            request.append("Accept-Encoding: gzip, deflate\r\n");
+            request.append("cookie: tracking=").append(i);
+            request.append(padding.length() > 0 && !post ? "; _ga=" + padding : "").append("\r\n");
+            request.append("Connection: keep-alive\r\n");
+            request.append("HOST: ").append(host).append("\r\n");
+            break;
+        }
+        if (post) {
+            request.append("Content-Type: application/x-www-form-urlencoded\r\n");
+            request.append("Content-Length: ").append(body.length()).append("\r\n");
+        }
+        request.append("\r\n").append(body);
+
+        return request.toString().getBytes(HttpBytes.ISO_8859_1);
+    }
+
+    public byte[] response(final int i) {
+        boolean notFound = i % 20 == 19;
+        boolean image = PATHS[i % PATHS.length].endsWith(".png");
+
+        StringBuilder body = new StringBuilder(bodySize + 64);
+        if (image) {
+            for (int b = 0; b < bodySize; b++) {
+                body.append((char) ((i * 31 + b * 17) & 0xff));
+            }
+        } else if (notFound) {
+            // The same error page for every missing path, as most sites serve
+            body.append("<html><head><title>Not Found</title></head><body><h1>Not Found</h1>");
+            while (body.length() < bodySize) {
+                body.append("<p>The requested page could not be found on this server.</p>");
+            }
+            body.append("</body></html>");
+        } else {
+            body.append("<html><head><title>Page ").append(i % 100).append("</title></head><body>");
+            while (body.length() < bodySize) {
+                body.append("<p>Lorem ipsum dolor sit amet <a href=\"/catalog/item?id=").append(body.length())
+                        .append("\">item</a></p>");
+            }
+            body.append("<input type=\"hidden\" name=\"csrf\" value=\"").append(Integer.toHexString(i * 7919))
+                    .append("\"></body></html>");
+        }
+
+        String head = (notFound ? "HTTP/1.1 404 Not Found\r\n" : "HTTP/1.1 200 OK\r\n")
+                + "Date: Thu, 17 Oct 2013 10:00:00 GMT\r\nServer: Apache\r\n"
+                + "Content-Type: " + (image ? "image/png" : "text/html; charset=UTF-8") + "\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + (i % 4 == 0 ? "Set-Cookie: JSESSIONID=" + Integer.toHexString(i) + "; Path=/\r\n" : "") + "\r\n";
+
+        return (head + body).getBytes(HttpBytes.ISO_8859_1);
+    }
+}
@@ -3,9 +3,9 @@
 #Licensed under the GNU Public License version 3.0 or greater
 #Automates Burp Suite Professional using the IBurpExtender Interface
 
-# Compile and Jar our BurpExtender class, and quit if any errors occur
+# Compile and Jar our BurpExtender classes (Burp already ships the I* interfaces), and quit if any errors occur
 javac burp/*.java 
-jar -cf BurpExtender.jar burp/BurpExtender.class
+jar -cf BurpExtender.jar $(ls burp/*.class | grep -v "/I[A-Z]")
 # Use the latest version of Burp Suite in the directory
 burp=$(ls -1t burp*.jar | head -n1)
 # Run Burp in headless mode with 1GB of memory, passing any command line arguments